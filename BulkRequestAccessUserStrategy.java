@@ -0,0 +1,78 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link RequestAccessUserStrategy} that can answer {@link #match(ApplicationUser, Issue)} and
+ * {@link #getUsers(Issue)} for many issues at once.
+ * <p>
+ * Only implement this if the strategy can answer a batch with fewer lookups than asking issue by issue. Strategies that
+ * do not implement this interface are evaluated issue by issue with {@link #matchEach} and {@link #getUsersEach}.
+ */
+public interface BulkRequestAccessUserStrategy extends RequestAccessUserStrategy {
+
+    /**
+     * Check which of the given issues the user matches the strategy type for.
+     * <p>
+     * This does not check access to the projects the issues belong to.
+     *
+     * @return the ids of the matching issues
+     */
+    @Nonnull
+    default Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+        return matchEach(this, user, issues);
+    }
+
+    /**
+     * Get the users of this strategy type for each of the given issues.
+     *
+     * @return the users keyed by issue id, issues without users may be absent
+     */
+    @Nonnull
+    default Map<Long, List<CheckedUser>> getUsers(@Nonnull final Collection<Issue> issues) {
+        return getUsersEach(this, issues);
+    }
+
+    /**
+     * Ask the strategy for each issue on its own
+     *
+     * @see #match(ApplicationUser, Collection)
+     */
+    @Nonnull
+    static Set<Long> matchEach(final RequestAccessUserStrategy strategy,
+                               final ApplicationUser user,
+                               @Nonnull final Collection<Issue> issues) {
+        final Set<Long> matchingIssueIds = new HashSet<>();
+        for (final Issue issue : issues) {
+            if (strategy.match(user, issue)) {
+                matchingIssueIds.add(issue.getId());
+            }
+        }
+        return matchingIssueIds;
+    }
+
+    /**
+     * Ask the strategy for each issue on its own
+     *
+     * @see #getUsers(Collection)
+     */
+    @Nonnull
+    static Map<Long, List<CheckedUser>> getUsersEach(final RequestAccessUserStrategy strategy,
+                                                     @Nonnull final Collection<Issue> issues) {
+        final Map<Long, List<CheckedUser>> usersByIssueId = new HashMap<>();
+        for (final Issue issue : issues) {
+            usersByIssueId.put(issue.getId(), strategy.getUsers(issue));
+        }
+        return usersByIssueId;
+    }
+}
@@ -1,43 +1,88 @@
 package com.atlassian.servicedesk.internal.permission.security;
 
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.atlassian.cache.CachedReference;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
 import com.atlassian.jira.bc.license.JiraLicenseService;
+import com.atlassian.jira.config.FeatureDisabledEvent;
+import com.atlassian.jira.config.FeatureEnabledEvent;
 import com.atlassian.jira.config.FeatureManager;
 import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.license.LicenseChangedEvent;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.api.feature.reqparticipants.group.CustomerGroupParticipantManager;
 import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
-import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 
 import static com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags.SHARE_REQUEST_WITH_GROUP;
 import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
 
 @Component
-public class CustomerGroupParticipantRequestAccessUserStrategy implements RequestAccessUserStrategy {
+public class CustomerGroupParticipantRequestAccessUserStrategy
+    implements BulkRequestAccessUserStrategy, InitializingBean, DisposableBean {
+
+    private static final String ENABLED_CACHE_NAME = CustomerGroupParticipantRequestAccessUserStrategy.class.getName() + ".enabled";
+
     private final CustomerGroupParticipantManager customerGroupParticipantManager;
     private final UserFactoryOld userFactoryOld;
     private final JiraLicenseService jiraLicenseService;
     private final FeatureManager featureManager;
+    private final EventPublisher eventPublisher;
+
+    /**
+     * Snapshot of the license and feature flag check, reset when either changes
+     */
+    private final CachedReference<Boolean> enabled;
 
     public CustomerGroupParticipantRequestAccessUserStrategy(
         final CustomerGroupParticipantManager customerGroupParticipantManager,
         final UserFactoryOld userFactoryOld,
         final JiraLicenseService jiraLicenseService,
-        final FeatureManager featureManager
+        final FeatureManager featureManager,
+        final CacheManager cacheManager,
+        final EventPublisher eventPublisher
     ) {
         this.customerGroupParticipantManager = customerGroupParticipantManager;
         this.userFactoryOld = userFactoryOld;
         this.jiraLicenseService = jiraLicenseService;
         this.featureManager = featureManager;
+        this.eventPublisher = eventPublisher;
+        this.enabled = cacheManager.getCachedReference(ENABLED_CACHE_NAME, this::computeEnabled, new CacheSettingsBuilder()
+            .remote()
+            .replicateViaInvalidation()
+            .build());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        eventPublisher.unregister(this);
     }
 
     private boolean isEnabled() {
+        return enabled.get();
+    }
+
+    private boolean computeEnabled() {
         return jiraLicenseService.isDataCenterLicensed()
             && featureManager.isEnabled(SHARE_REQUEST_WITH_GROUP);
     }
@@ -45,15 +90,34 @@ public class CustomerGroupParticipantRequestAccessUserStrategy implements Reques
     @Override
     public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
         if (isEnabled()) {
-            final Collection<CheckedUser> users = customerGroupParticipantManager
-                .getGroupMembersForIssue(issue)
-                .getOrElse(emptyList());
-            return new ArrayList<>(users);
+            return expandGroupMembers(issue);
         } else {
             return emptyList();
         }
     }
 
+    private List<CheckedUser> expandGroupMembers(final Issue issue) {
+        final Collection<CheckedUser> users = customerGroupParticipantManager
+            .getGroupMembersForIssue(issue)
+            .getOrElse(emptyList());
+        return new ArrayList<>(users);
+    }
+
+    /**
+     * Checks the license and feature flag once for the whole batch
+     */
+    @Nonnull
+    @Override
+    public Map<Long, List<CheckedUser>> getUsers(@Nonnull final Collection<Issue> issues) {
+        final Map<Long, List<CheckedUser>> usersByIssueId = new HashMap<>();
+        if (isEnabled()) {
+            for (final Issue issue : issues) {
+                usersByIssueId.put(issue.getId(), expandGroupMembers(issue));
+            }
+        }
+        return usersByIssueId;
+    }
+
     @Override
     public CustomerInvolvedType getType() {
         return CustomerInvolvedType.CUSTOMER_GROUP;
@@ -64,9 +128,51 @@ public class CustomerGroupParticipantRequestAccessUserStrategy implements Reques
         if (isEnabled()) {
             return userFactoryOld
                 .wrap(user)
-                .exists(checkedUser -> customerGroupParticipantManager.isMemberOfAnyGroupsInIssue(checkedUser, issue));
+                .exists(checkedUser -> isMember(checkedUser, issue));
         } else {
             return false;
         }
     }
+
+    /**
+     * Checks the license and feature flag and wraps the user once for the whole batch
+     */
+    @Nonnull
+    @Override
+    public Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+        if (!isEnabled()) {
+            return new HashSet<>();
+        }
+
+        return userFactoryOld.wrap(user)
+            .map(checkedUser -> issues.stream()
+                .filter(issue -> isMember(checkedUser, issue))
+                .map(Issue::getId)
+                .collect(toSet()))
+            .getOrElse(new HashSet<>());
+    }
+
+    /**
+     * The single and the bulk match both resolve membership here, so they always agree
+     */
+    private boolean isMember(final CheckedUser checkedUser, final Issue issue) {
+        return customerGroupParticipantManager.isMemberOfAnyGroupsInIssue(checkedUser, issue);
+    }
+
+    // Events
+
+    @EventListener
+    public void onLicenseChanged(final LicenseChangedEvent event) {
+        enabled.reset();
+    }
+
+    @EventListener
+    public void onFeatureEnabled(final FeatureEnabledEvent event) {
+        enabled.reset();
+    }
+
+    @EventListener
+    public void onFeatureDisabled(final FeatureDisabledEvent event) {
+        enabled.reset();
+    }
 }
@@ -0,0 +1,131 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.bc.license.JiraLicenseService;
+import com.atlassian.jira.config.FeatureManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.license.LicenseChangedEvent;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.feature.reqparticipants.group.CustomerGroupParticipantManager;
+import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
+import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Either;
+import io.atlassian.fugue.Option;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags.SHARE_REQUEST_WITH_GROUP;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerGroupParticipantRequestAccessUserStrategyTest {
+
+    @Mock
+    private CustomerGroupParticipantManager customerGroupParticipantManager;
+    @Mock
+    private UserFactoryOld userFactoryOld;
+    @Mock
+    private JiraLicenseService jiraLicenseService;
+    @Mock
+    private FeatureManager featureManager;
+    @Mock
+    private EventPublisher eventPublisher;
+    @Mock
+    private ApplicationUser user;
+    @Mock
+    private CheckedUser checkedUser;
+    @Mock
+    private CheckedUser otherMember;
+    @Mock
+    private Issue sharedIssue;
+    @Mock
+    private Issue unsharedIssue;
+
+    private CustomerGroupParticipantRequestAccessUserStrategy strategy;
+
+    @Before
+    public void setUp() {
+        when(jiraLicenseService.isDataCenterLicensed()).thenReturn(true);
+        when(featureManager.isEnabled(SHARE_REQUEST_WITH_GROUP)).thenReturn(true);
+        when(userFactoryOld.wrap(user)).thenReturn(Either.right(checkedUser));
+        when(checkedUser.forJIRA()).thenReturn(user);
+        when(sharedIssue.getId()).thenReturn(1L);
+        when(unsharedIssue.getId()).thenReturn(2L);
+
+        when(customerGroupParticipantManager.isMemberOfAnyGroupsInIssue(checkedUser, sharedIssue)).thenReturn(true);
+        when(customerGroupParticipantManager.getGroupMembersForIssue(sharedIssue))
+            .thenReturn(Option.some(ImmutableList.of(checkedUser, otherMember)));
+        when(customerGroupParticipantManager.getGroupMembersForIssue(unsharedIssue))
+            .thenReturn(Option.none());
+
+        strategy = new CustomerGroupParticipantRequestAccessUserStrategy(customerGroupParticipantManager,
+            userFactoryOld, jiraLicenseService, featureManager, new MemoryCacheManager(), eventPublisher);
+    }
+
+    @Test
+    public void bulk_match_agrees_with_single_match() {
+        assertThat(strategy.match(user, ImmutableList.of(sharedIssue, unsharedIssue)), contains(1L));
+
+        assertThat(strategy.match(user, sharedIssue), is(true));
+        assertThat(strategy.match(user, unsharedIssue), is(false));
+    }
+
+    @Test
+    public void bulk_get_users_agrees_with_single_get_users() {
+        final Map<Long, List<CheckedUser>> usersByIssueId = strategy.getUsers(ImmutableList.of(sharedIssue, unsharedIssue));
+
+        assertThat(usersByIssueId.get(1L), contains(checkedUser, otherMember));
+        assertThat(usersByIssueId.get(2L), empty());
+        assertThat(strategy.getUsers(sharedIssue), contains(checkedUser, otherMember));
+        assertThat(strategy.getUsers(unsharedIssue), empty());
+    }
+
+    @Test
+    public void membership_is_not_answered_from_an_earlier_expansion() {
+        strategy.getUsers(sharedIssue);
+        when(customerGroupParticipantManager.isMemberOfAnyGroupsInIssue(checkedUser, sharedIssue)).thenReturn(false);
+
+        assertThat(strategy.match(user, sharedIssue), is(false));
+        assertThat(strategy.match(user, ImmutableList.of(sharedIssue)), empty());
+    }
+
+    @Test
+    public void disabled_sharing_matches_and_expands_nothing() {
+        when(featureManager.isEnabled(SHARE_REQUEST_WITH_GROUP)).thenReturn(false);
+        strategy.onLicenseChanged(mock(LicenseChangedEvent.class));
+
+        assertThat(strategy.match(user, sharedIssue), is(false));
+        assertThat(strategy.match(user, ImmutableList.of(sharedIssue)), empty());
+        assertThat(strategy.getUsers(sharedIssue), empty());
+        assertThat(strategy.getUsers(ImmutableList.of(sharedIssue)), is(anEmptyMap()));
+    }
+
+    @Test
+    public void enabled_state_is_computed_once_until_it_is_reset() {
+        strategy.match(user, sharedIssue);
+        strategy.match(user, ImmutableList.of(sharedIssue, unsharedIssue));
+        strategy.getUsers(sharedIssue);
+
+        verify(jiraLicenseService, times(1)).isDataCenterLicensed();
+
+        strategy.onLicenseChanged(mock(LicenseChangedEvent.class));
+        strategy.match(user, sharedIssue);
+
+        verify(jiraLicenseService, times(2)).isDataCenterLicensed();
+    }
+}
@@ -5,41 +5,119 @@ import com.atlassian.jira.project.Project;
 import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
 import com.atlassian.servicedesk.api.customer.CustomerContextService;
 import com.atlassian.servicedesk.api.user.CheckedUser;
-import com.atlassian.servicedesk.internal.api.permission.security.CustomerInvolvedService;
-import com.atlassian.servicedesk.internal.api.user.permission.ServiceDeskLicenseAndPermissionService;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
-import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Option;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import static java.util.stream.Collectors.toList;
+import static com.atlassian.servicedesk.internal.permission.security.RequestAccessUserStrategyManagerImpl.userKey;
+import static com.google.common.base.Preconditions.checkArgument;
 
 @Component
 @ExportAsService
-public class CustomerInvolvedServiceImpl implements CustomerInvolvedService {
-    private final ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService;
+public class CustomerInvolvedServiceImpl implements ExtendedCustomerInvolvedService {
+    private static final String ALL_MEMBERS = "all";
+
     private final CustomerContextService customerContextService;
     private final RequestAccessUserStrategyManager requestAccessUserStrategyManager;
+    private final CustomerPortalAccessBatchChecker customerPortalAccessBatchChecker;
+    private final RequestMembersEventMemo requestMembersEventMemo;
 
     @Autowired
-    public CustomerInvolvedServiceImpl(ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService,
-                                       CustomerContextService customerContextService,
-                                       RequestAccessUserStrategyManager requestAccessUserStrategyManager) {
-        this.serviceDeskLicenseAndPermissionService = serviceDeskLicenseAndPermissionService;
+    public CustomerInvolvedServiceImpl(CustomerContextService customerContextService,
+                                       RequestAccessUserStrategyManager requestAccessUserStrategyManager,
+                                       CustomerPortalAccessBatchChecker customerPortalAccessBatchChecker,
+                                       RequestMembersEventMemo requestMembersEventMemo) {
         this.customerContextService = customerContextService;
         this.requestAccessUserStrategyManager = requestAccessUserStrategyManager;
+        this.customerPortalAccessBatchChecker = customerPortalAccessBatchChecker;
+        this.requestMembersEventMemo = requestMembersEventMemo;
     }
 
+    /**
+     * Shared by all consumers of an issue event handed over through {@link #withSharedMembers}
+     */
     @Override
     public List<CheckedUser> getMembers(Issue issue) {
-        final List<CheckedUser> members = requestAccessUserStrategyManager.getMembers(issue);
-        return filterPermissions(issue, members);
+        return requestMembersEventMemo.get(issue, ALL_MEMBERS,
+            () -> filterPermissions(issue, requestAccessUserStrategyManager.getMemberTypes(issue)));
+    }
+
+    @Override
+    public void withSharedMembers(final Issue issue, final Runnable consumers) {
+        requestMembersEventMemo.dispatch(issue, consumers);
+    }
+
+    @Override
+    public <T> CompletionStage<T> withSharedMembersAsync(final Issue issue,
+                                                         final Supplier<? extends CompletionStage<T>> consumers) {
+        return requestMembersEventMemo.dispatchAsync(issue, consumers);
+    }
+
+    /**
+     * The strategies before the one of the cursor are expanded to skip their users, the strategies after the one the
+     * page ends in are not expanded at all. Candidates are permission checked in chunks that never exceed the space left
+     * on the page, so the cursor points right after the last checked candidate.
+     */
+    @Override
+    public RequestMembersPage getMembers(final Issue issue, final RequestMembersPage.Cursor cursor, final int limit) {
+        checkArgument(limit > 0, "limit must be positive");
+
+        final Iterator<List<CheckedUser>> membersByStrategy = requestAccessUserStrategyManager.iterateMembersByStrategy(issue);
+        final List<CheckedUser> members = new ArrayList<>(limit);
+        for (int strategyIndex = 0; membersByStrategy.hasNext(); strategyIndex++) {
+            final List<CheckedUser> candidates = membersByStrategy.next();
+            if (strategyIndex < cursor.getStrategyIndex()) {
+                continue;
+            }
+
+            int position = strategyIndex == cursor.getStrategyIndex() ? positionAfter(candidates, cursor) : 0;
+            while (members.size() < limit && position < candidates.size()) {
+                final int end = Math.min(candidates.size(), position + limit - members.size());
+                members.addAll(customerPortalAccessBatchChecker.filterUsersWithPortalAccess(
+                    candidates.subList(position, end), issue));
+                position = end;
+            }
+            if (members.size() >= limit) {
+                // nothing else is expanded, so a page that ends with the last member may return a cursor to an empty page
+                return new RequestMembersPage(members, Option.some(
+                    RequestMembersPage.Cursor.after(strategyIndex, userKey(candidates.get(position - 1)))));
+            }
+        }
+        return new RequestMembersPage(members, Option.none());
     }
 
+    /**
+     * @return the position of the first candidate after the last user key of the cursor, the candidates are sorted by
+     * user key
+     */
+    private static int positionAfter(final List<CheckedUser> candidates, final RequestMembersPage.Cursor cursor) {
+        final Option<String> afterUserKey = cursor.getAfterUserKey();
+        if (afterUserKey.isEmpty()) {
+            return 0;
+        }
+        int position = 0;
+        while (position < candidates.size() && userKey(candidates.get(position)).compareTo(afterUserKey.get()) <= 0) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Shared by all consumers of an issue event handed over through {@link #withSharedMembers}
+     */
     @Override
     public List<CheckedUser> getMembersForTypes(final Issue issue, final CustomerInvolvedType... types) {
-        return filterPermissions(issue, getMembersForTypesNoPermissionChecks(issue, types));
+        return requestMembersEventMemo.get(issue, Integer.toString(RequestAccessStrategySnapshot.typeMask(types)),
+            () -> filterPermissions(issue, requestAccessUserStrategyManager.getMemberTypesForTypes(issue, types)));
     }
 
     @Override
@@ -48,10 +126,12 @@ public class CustomerInvolvedServiceImpl implements CustomerInvolvedService {
         return requestAccessUserStrategyManager.getMembersForTypes(issue, types);
     }
 
-    private List<CheckedUser> filterPermissions(Issue issue, List<CheckedUser> users) {
-        final List<CheckedUser> checkedPermissionsUsers =
-            users.stream().filter(user -> hasAccessToRequest(user, issue)).collect(toList());
-        return ImmutableList.copyOf(checkedPermissionsUsers);
+    /**
+     * Every member was returned by at least one strategy, i.e. is known to match the request already. Only the portal
+     * permission is left to check, for all members at once.
+     */
+    private List<CheckedUser> filterPermissions(Issue issue, Map<CheckedUser, Set<CustomerInvolvedType>> memberTypes) {
+        return customerPortalAccessBatchChecker.filterUsersWithPortalAccess(new ArrayList<>(memberTypes.keySet()), issue);
     }
 
     /**
@@ -65,10 +145,8 @@ public class CustomerInvolvedServiceImpl implements CustomerInvolvedService {
         }
 
         return customerContextService
-            .runInCustomerContext(() ->
-                (serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(user, project)
-                    || serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(user, issue)) // should not be relevant for CustomerInvolvedService
-                    && requestAccessUserStrategyManager.match(user.forJIRA(), issue));
+            .runInCustomerContext(() -> customerPortalAccessBatchChecker.hasPortalAccess(user, issue, project)
+                && requestAccessUserStrategyManager.match(user.forJIRA(), issue));
     }
 
     @Override
@@ -80,7 +158,21 @@ public class CustomerInvolvedServiceImpl implements CustomerInvolvedService {
 
         return customerContextService
             .runInCustomerContext(() -> requestAccessUserStrategyManager.match(user.forJIRA(), issue, types)
-                && (serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(user, project)
-                || serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(user, issue))); // should not be relevant for CustomerInvolvedService
+                && customerPortalAccessBatchChecker.hasPortalAccess(user, issue, project));
+    }
+
+    @Override
+    public EnumSet<CustomerInvolvedType> getUserTypes(final CheckedUser user, final Issue issue) {
+        final Project project = issue.getProjectObject();
+        if (project == null) {
+            return EnumSet.noneOf(CustomerInvolvedType.class);
+        }
+
+        return customerContextService.runInCustomerContext(() -> {
+            final Set<CustomerInvolvedType> types = requestAccessUserStrategyManager.getMatchingTypes(user.forJIRA(), issue);
+            return types.isEmpty() || !customerPortalAccessBatchChecker.hasPortalAccess(user, issue, project)
+                ? EnumSet.noneOf(CustomerInvolvedType.class)
+                : EnumSet.copyOf(types);
+        });
     }
 }
@@ -0,0 +1,194 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.permission.ServiceDeskLicenseAndPermissionService;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import io.atlassian.fugue.Option;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerInvolvedServiceImplTest {
+
+    @Mock
+    private CustomerContextService customerContextService;
+    @Mock
+    private RequestAccessUserStrategyManager requestAccessUserStrategyManager;
+    @Mock
+    private ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService;
+    @Mock
+    private ServiceDeskJiraRoleManager serviceDeskJiraRoleManager;
+    @Mock
+    private CustomerOrganizationMemberManager customerOrganizationMemberManager;
+    @Mock
+    private JiraAuthenticationContext jiraAuthenticationContext;
+    @Mock
+    private ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+    @Mock
+    private Issue issue;
+    @Mock
+    private Project project;
+    @Mock
+    private CheckedUser reporter;
+    @Mock
+    private CheckedUser orgMember;
+    @Mock
+    private CheckedUser participant;
+    @Mock
+    private ApplicationUser reporterUser;
+    @Mock
+    private ApplicationUser orgMemberUser;
+    @Mock
+    private ApplicationUser participantUser;
+
+    private final AtomicInteger expandedStrategies = new AtomicInteger();
+
+    private CustomerInvolvedServiceImpl customerInvolvedService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        final CustomerPortalAccessBatchChecker customerPortalAccessBatchChecker =
+            new CustomerPortalAccessBatchChecker(serviceDeskLicenseAndPermissionService, customerContextService,
+                serviceDeskJiraRoleManager, customerOrganizationMemberManager);
+        customerInvolvedService = new CustomerInvolvedServiceImpl(
+            customerContextService, requestAccessUserStrategyManager, customerPortalAccessBatchChecker,
+            new RequestMembersEventMemo(
+                jiraAuthenticationContext, customerContextService, serviceDeskOutsideCustomerPermissionContext));
+
+        when(customerContextService.runInCustomerContext(any(Supplier.class)))
+            .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+        when(issue.getProjectObject()).thenReturn(project);
+        when(reporter.forJIRA()).thenReturn(reporterUser);
+        when(orgMember.forJIRA()).thenReturn(orgMemberUser);
+        when(participant.forJIRA()).thenReturn(participantUser);
+        when(reporterUser.getKey()).thenReturn("a-reporter");
+        when(orgMemberUser.getKey()).thenReturn("b-org-member");
+        when(participantUser.getKey()).thenReturn("c-participant");
+        when(requestAccessUserStrategyManager.getMemberTypes(issue)).thenReturn(ImmutableMap.of(
+            reporter, EnumSet.of(CustomerInvolvedType.REPORTER),
+            orgMember, EnumSet.of(CustomerInvolvedType.CUSTOMER_ORGANISATION)));
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(reporter, project)).thenReturn(true);
+    }
+
+    @Test
+    public void members_are_filtered_by_portal_permission_without_matching_them_again() {
+        assertThat(customerInvolvedService.getMembers(issue), contains(reporter));
+
+        verify(requestAccessUserStrategyManager, never()).match(any(ApplicationUser.class), any(Issue.class));
+    }
+
+    @Test
+    public void consumers_of_an_event_share_the_members() {
+        when(issue.getId()).thenReturn(10000L);
+        when(issue.getUpdated()).thenReturn(new Timestamp(1000L));
+
+        customerInvolvedService.withSharedMembers(issue, () -> {
+            customerInvolvedService.getMembers(issue);
+            customerInvolvedService.getMembers(issue);
+        });
+
+        verify(requestAccessUserStrategyManager, times(1)).getMemberTypes(issue);
+    }
+
+    @Test
+    public void members_are_paged_after_permission_checks() {
+        stubMembersByStrategy();
+
+        final RequestMembersPage firstPage = customerInvolvedService.getMembers(issue, RequestMembersPage.Cursor.start(), 1);
+        assertThat(firstPage.getMembers(), contains(reporter));
+        assertThat(firstPage.getNext(), is(Option.some(RequestMembersPage.Cursor.after(0, "a-reporter"))));
+
+        final RequestMembersPage secondPage = customerInvolvedService.getMembers(issue, firstPage.getNext().get(), 1);
+        assertThat(secondPage.getMembers(), contains(participant));
+        assertThat(secondPage.getNext(), is(Option.some(RequestMembersPage.Cursor.after(1, "c-participant"))));
+
+        final RequestMembersPage lastPage = customerInvolvedService.getMembers(issue, secondPage.getNext().get(), 1);
+        assertThat(lastPage.getMembers(), is(empty()));
+        assertThat(lastPage.getNext().isDefined(), is(false));
+    }
+
+    @Test
+    public void full_page_does_not_expand_the_next_strategy() {
+        stubMembersByStrategy();
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(orgMember, project)).thenReturn(true);
+
+        final RequestMembersPage page = customerInvolvedService.getMembers(issue, RequestMembersPage.Cursor.start(), 2);
+
+        assertThat(page.getMembers(), contains(reporter, orgMember));
+        assertThat(page.getNext(), is(Option.some(RequestMembersPage.Cursor.after(0, "b-org-member"))));
+        assertThat(expandedStrategies.get(), is(1));
+    }
+
+    @Test
+    public void members_added_before_the_cursor_do_not_shift_the_next_page() {
+        stubMembersByStrategy();
+
+        final RequestMembersPage page = customerInvolvedService.getMembers(issue,
+            RequestMembersPage.Cursor.after(0, "a-reporter"), 1);
+
+        // org member was denied, the participant of the next strategy fills the page
+        assertThat(page.getMembers(), contains(participant));
+    }
+
+    @Test
+    public void user_types_are_empty_without_portal_access() {
+        when(requestAccessUserStrategyManager.getMatchingTypes(orgMemberUser, issue))
+            .thenReturn(EnumSet.of(CustomerInvolvedType.CUSTOMER_ORGANISATION));
+
+        assertThat(customerInvolvedService.getUserTypes(orgMember, issue), is(empty()));
+    }
+
+    @Test
+    public void user_types_are_all_matching_types_with_portal_access() {
+        when(requestAccessUserStrategyManager.getMatchingTypes(reporterUser, issue))
+            .thenReturn(EnumSet.of(CustomerInvolvedType.REPORTER, CustomerInvolvedType.REQUEST_PARTICIPANT));
+
+        assertThat(customerInvolvedService.getUserTypes(reporter, issue),
+            is(EnumSet.of(CustomerInvolvedType.REPORTER, CustomerInvolvedType.REQUEST_PARTICIPANT)));
+    }
+
+    /**
+     * Stubs the reporter and the org member as the first strategy and the participant as the second one
+     */
+    private void stubMembersByStrategy() {
+        final List<List<CheckedUser>> membersByStrategy = ImmutableList.of(
+            ImmutableList.of(reporter, orgMember),
+            ImmutableList.of(participant));
+        when(requestAccessUserStrategyManager.iterateMembersByStrategy(issue))
+            .thenAnswer(invocation -> Iterators.transform(membersByStrategy.iterator(), members -> {
+                expandedStrategies.incrementAndGet();
+                return members;
+            }));
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(participant, project)).thenReturn(true);
+    }
+}
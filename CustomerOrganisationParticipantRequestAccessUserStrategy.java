@@ -1,39 +1,47 @@
 package com.atlassian.servicedesk.internal.permission.security;
 
 import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
 import com.atlassian.servicedesk.internal.feature.reqparticipants.organization.CustomerOrganizationParticipantManager;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
-import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
 
 @Component
-public class CustomerOrganisationParticipantRequestAccessUserStrategy implements RequestAccessUserStrategy {
+public class CustomerOrganisationParticipantRequestAccessUserStrategy implements BulkRequestAccessUserStrategy {
     private final CustomerOrganizationParticipantManager customerOrganizationParticipantManager;
+    private final CustomerOrganizationMemberManager customerOrganizationMemberManager;
     private final UserFactoryOld userFactoryOld;
 
     @Autowired
     public CustomerOrganisationParticipantRequestAccessUserStrategy(CustomerOrganizationParticipantManager customerOrganizationParticipantManager,
+                                                                    CustomerOrganizationMemberManager customerOrganizationMemberManager,
                                                                     UserFactoryOld userFactoryOld) {
         this.customerOrganizationParticipantManager = customerOrganizationParticipantManager;
+        this.customerOrganizationMemberManager = customerOrganizationMemberManager;
         this.userFactoryOld = userFactoryOld;
     }
 
     @Override
     public List<CheckedUser> getUsers(@Nonnull Issue issue) {
-        final Collection<CheckedUser> users = customerOrganizationParticipantManager
+        return new ArrayList<>(customerOrganizationParticipantManager
             .getOrganizationMembersForIssue(issue)
-            .getOrElse(emptyList());
-        return new ArrayList<>(users);
+            .getOrElse(emptyList()));
     }
 
     @Override
@@ -47,4 +55,34 @@ public class CustomerOrganisationParticipantRequestAccessUserStrategy implements
             .exists(checkedUser -> customerOrganizationParticipantManager
                 .isMemberOfAnyOrganizationsInIssue(checkedUser, issue));
     }
+
+    /**
+     * Wraps the user once for all issues and skips the issues of every project the user is not a member of any
+     * organisation of, as a request can only be shared with the organisations of its project
+     */
+    @Nonnull
+    @Override
+    public Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+        return userFactoryOld.wrap(user)
+            .map(checkedUser -> {
+                final Map<Long, Boolean> memberOfProjectById = new HashMap<>();
+                return issues.stream()
+                    .filter(issue -> isMemberOfAnyOrganizationsInProject(checkedUser, issue, memberOfProjectById))
+                    .filter(issue -> customerOrganizationParticipantManager.isMemberOfAnyOrganizationsInIssue(checkedUser, issue))
+                    .map(Issue::getId)
+                    .collect(toSet());
+            })
+            .getOrElse(new HashSet<>());
+    }
+
+    private boolean isMemberOfAnyOrganizationsInProject(final CheckedUser checkedUser,
+                                                        final Issue issue,
+                                                        final Map<Long, Boolean> memberOfProjectById) {
+        final Project project = issue.getProjectObject();
+        if (project == null || project.getId() == null) {
+            return true;
+        }
+        return memberOfProjectById.computeIfAbsent(project.getId(),
+            id -> customerOrganizationMemberManager.isMemberOfAnyOrganizationsInProject(checkedUser, project));
+    }
 }
@@ -0,0 +1,110 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.feature.reqparticipants.organization.CustomerOrganizationParticipantManager;
+import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Either;
+import io.atlassian.fugue.Option;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerOrganisationParticipantRequestAccessUserStrategyTest {
+
+    @Mock
+    private CustomerOrganizationParticipantManager customerOrganizationParticipantManager;
+    @Mock
+    private CustomerOrganizationMemberManager customerOrganizationMemberManager;
+    @Mock
+    private UserFactoryOld userFactoryOld;
+    @Mock
+    private ApplicationUser user;
+    @Mock
+    private CheckedUser checkedUser;
+    @Mock
+    private CheckedUser otherMember;
+    @Mock
+    private Project memberProject;
+    @Mock
+    private Project otherProject;
+    @Mock
+    private Issue sharedIssue;
+    @Mock
+    private Issue unsharedIssue;
+    @Mock
+    private Issue otherProjectIssue;
+
+    private CustomerOrganisationParticipantRequestAccessUserStrategy strategy;
+
+    @Before
+    public void setUp() {
+        when(userFactoryOld.wrap(user)).thenReturn(Either.right(checkedUser));
+        when(checkedUser.forJIRA()).thenReturn(user);
+        when(memberProject.getId()).thenReturn(10L);
+        when(otherProject.getId()).thenReturn(20L);
+        issue(sharedIssue, 1L, memberProject);
+        issue(unsharedIssue, 2L, memberProject);
+        issue(otherProjectIssue, 3L, otherProject);
+
+        when(customerOrganizationMemberManager.isMemberOfAnyOrganizationsInProject(checkedUser, memberProject)).thenReturn(true);
+        when(customerOrganizationParticipantManager.isMemberOfAnyOrganizationsInIssue(checkedUser, sharedIssue)).thenReturn(true);
+        when(customerOrganizationParticipantManager.getOrganizationMembersForIssue(sharedIssue))
+            .thenReturn(Option.some(ImmutableList.of(checkedUser, otherMember)));
+        when(customerOrganizationParticipantManager.getOrganizationMembersForIssue(unsharedIssue))
+            .thenReturn(Option.none());
+
+        strategy = new CustomerOrganisationParticipantRequestAccessUserStrategy(
+            customerOrganizationParticipantManager, customerOrganizationMemberManager, userFactoryOld);
+    }
+
+    @Test
+    public void bulk_match_agrees_with_single_match() {
+        assertThat(strategy.match(user, ImmutableList.of(sharedIssue, unsharedIssue, otherProjectIssue)), contains(1L));
+
+        for (final Issue issue : ImmutableList.of(sharedIssue, unsharedIssue, otherProjectIssue)) {
+            assertThat(strategy.match(user, issue), is(issue == sharedIssue));
+        }
+    }
+
+    @Test
+    public void bulk_match_checks_project_membership_once_per_project() {
+        strategy.match(user, ImmutableList.of(sharedIssue, unsharedIssue, otherProjectIssue));
+
+        verify(customerOrganizationMemberManager, times(1)).isMemberOfAnyOrganizationsInProject(checkedUser, memberProject);
+        verify(customerOrganizationMemberManager, times(1)).isMemberOfAnyOrganizationsInProject(checkedUser, otherProject);
+        // the user is in no organisation of the other project, so its requests are not asked about
+        verify(customerOrganizationParticipantManager, never()).isMemberOfAnyOrganizationsInIssue(checkedUser, otherProjectIssue);
+    }
+
+    @Test
+    public void bulk_get_users_returns_the_organisation_members_of_each_issue() {
+        final Map<Long, List<CheckedUser>> usersByIssueId = strategy.getUsers(ImmutableList.of(sharedIssue, unsharedIssue));
+
+        assertThat(usersByIssueId.get(1L), contains(checkedUser, otherMember));
+        assertThat(usersByIssueId.get(2L), empty());
+    }
+
+    private static void issue(final Issue issue, final long id, final Project project) {
+        when(issue.getId()).thenReturn(id);
+        when(issue.getProjectObject()).thenReturn(project);
+    }
+}
@@ -5,19 +5,26 @@ import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
-import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
 import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext.OutsideCustomerIssuePermissionContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import static io.atlassian.fugue.Suppliers.alwaysFalse;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 @Component
-public class CustomerOutsiderRequestAccessUserStrategy implements RequestAccessUserStrategy {
+public class CustomerOutsiderRequestAccessUserStrategy implements BulkRequestAccessUserStrategy {
 
     private final ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
     private final UserFactoryOld userFactoryOld;
@@ -35,10 +42,28 @@ public class CustomerOutsiderRequestAccessUserStrategy implements RequestAccessU
         return serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext()
             .stream()
             .filter(context -> Objects.equals(context.getIssue(), issue))
-            .map(ServiceDeskOutsideCustomerPermissionContext.OutsideCustomerIssuePermissionContext::getCheckedUser)
+            .map(OutsideCustomerIssuePermissionContext::getCheckedUser)
             .collect(toList());
     }
 
+    /**
+     * Scans the outside customer context once and indexes it by issue, instead of scanning it once per issue. Issues
+     * are compared the same way as {@link #getUsers(Issue)} does.
+     */
+    @Nonnull
+    @Override
+    public Map<Long, List<CheckedUser>> getUsers(@Nonnull Collection<Issue> issues) {
+        final Map<Issue, List<CheckedUser>> outsidersByIssue = indexOutsidersByIssue();
+        final Map<Long, List<CheckedUser>> usersByIssueId = new HashMap<>();
+        for (final Issue issue : issues) {
+            final List<CheckedUser> outsiders = outsidersByIssue.get(issue);
+            if (outsiders != null) {
+                usersByIssueId.put(issue.getId(), outsiders);
+            }
+        }
+        return usersByIssueId;
+    }
+
     @Override
     public CustomerInvolvedType getType() {
         return CustomerInvolvedType.CUSTOMER_OUTSIDER;
@@ -51,4 +76,30 @@ public class CustomerOutsiderRequestAccessUserStrategy implements RequestAccessU
             .getOr(alwaysFalse());
     }
 
+    /**
+     * Wraps the user once for the whole batch, every issue is checked with the same predicate as
+     * {@link #match(ApplicationUser, Issue)}
+     */
+    @Nonnull
+    @Override
+    public Set<Long> match(ApplicationUser user, @Nonnull Collection<Issue> issues) {
+        return userFactoryOld.wrap(user)
+            .map(checkedUser -> issues.stream()
+                .filter(issue -> serviceDeskOutsideCustomerPermissionContext.isInIssueOutsideCustomerContext(checkedUser, issue))
+                .map(Issue::getId)
+                .collect(toSet()))
+            .getOrElse(new HashSet<>());
+    }
+
+    private Map<Issue, List<CheckedUser>> indexOutsidersByIssue() {
+        final Map<Issue, List<CheckedUser>> outsidersByIssue = new HashMap<>();
+        for (final OutsideCustomerIssuePermissionContext context : serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext()) {
+            if (context.getIssue() != null) {
+                outsidersByIssue.computeIfAbsent(context.getIssue(), issue -> new ArrayList<>())
+                    .add(context.getCheckedUser());
+            }
+        }
+        return outsidersByIssue;
+    }
+
 }
@@ -0,0 +1,108 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext.OutsideCustomerIssuePermissionContext;
+import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Either;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerOutsiderRequestAccessUserStrategyTest {
+
+    @Mock
+    private ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+    @Mock
+    private UserFactoryOld userFactoryOld;
+    @Mock
+    private ApplicationUser user;
+    @Mock
+    private CheckedUser outsider;
+    @Mock
+    private CheckedUser otherOutsider;
+    @Mock
+    private Issue sharedIssue;
+    @Mock
+    private Issue otherIssue;
+    @Mock
+    private Issue unsharedIssue;
+
+    private CustomerOutsiderRequestAccessUserStrategy strategy;
+
+    @Before
+    public void setUp() {
+        when(sharedIssue.getId()).thenReturn(1L);
+        when(otherIssue.getId()).thenReturn(2L);
+        when(unsharedIssue.getId()).thenReturn(3L);
+        when(userFactoryOld.wrap(user)).thenReturn(Either.right(outsider));
+        // built before stubbing the context, the mocks are stubbed themselves
+        final List<OutsideCustomerIssuePermissionContext> outsideCustomers = ImmutableList.of(
+            outsideCustomer(outsider, sharedIssue),
+            outsideCustomer(otherOutsider, sharedIssue),
+            outsideCustomer(outsider, otherIssue),
+            outsideCustomer(otherOutsider, null));
+        when(serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext()).thenReturn(outsideCustomers);
+        when(serviceDeskOutsideCustomerPermissionContext.isInIssueOutsideCustomerContext(outsider, sharedIssue)).thenReturn(true);
+        when(serviceDeskOutsideCustomerPermissionContext.isInIssueOutsideCustomerContext(outsider, otherIssue)).thenReturn(true);
+
+        strategy = new CustomerOutsiderRequestAccessUserStrategy(serviceDeskOutsideCustomerPermissionContext, userFactoryOld);
+    }
+
+    @Test
+    public void bulk_get_users_agrees_with_single_get_users() {
+        final Map<Long, List<CheckedUser>> usersByIssueId =
+            strategy.getUsers(ImmutableList.of(sharedIssue, otherIssue, unsharedIssue));
+
+        assertThat(usersByIssueId.get(1L), contains(outsider, otherOutsider));
+        assertThat(usersByIssueId.get(2L), contains(outsider));
+        assertThat(usersByIssueId.get(3L), is(nullValue()));
+        assertThat(strategy.getUsers(sharedIssue), contains(outsider, otherOutsider));
+        assertThat(strategy.getUsers(otherIssue), contains(outsider));
+        assertThat(strategy.getUsers(unsharedIssue), empty());
+    }
+
+    @Test
+    public void bulk_get_users_reads_the_outside_customer_context_once() {
+        strategy.getUsers(ImmutableList.of(sharedIssue, otherIssue, unsharedIssue));
+
+        verify(serviceDeskOutsideCustomerPermissionContext, times(1)).getOutsideCustomerContext();
+    }
+
+    @Test
+    public void bulk_match_agrees_with_single_match() {
+        assertThat(strategy.match(user, ImmutableList.of(sharedIssue, otherIssue, unsharedIssue)),
+            containsInAnyOrder(1L, 2L));
+        verify(userFactoryOld, times(1)).wrap(user);
+
+        assertThat(strategy.match(user, sharedIssue), is(true));
+        assertThat(strategy.match(user, otherIssue), is(true));
+        assertThat(strategy.match(user, unsharedIssue), is(false));
+    }
+
+    private static OutsideCustomerIssuePermissionContext outsideCustomer(final CheckedUser user, final Issue issue) {
+        final OutsideCustomerIssuePermissionContext context = mock(OutsideCustomerIssuePermissionContext.class);
+        when(context.getCheckedUser()).thenReturn(user);
+        when(context.getIssue()).thenReturn(issue);
+        return context;
+    }
+}
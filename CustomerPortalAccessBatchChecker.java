@@ -0,0 +1,140 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.cache.request.RequestCacheController;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.permission.ServiceDeskLicenseAndPermissionService;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskProjectRole;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Checks whether customers can view the portal of a request, for many customers at once.
+ * <p>
+ * The customer context is entered once, and a request cache is opened for the batch if there is none (e.g. when
+ * sending notifications), so the service desk of the project and its access settings are only looked up once, see
+ * {@link com.atlassian.servicedesk.internal.permission.security.type.ServiceDeskAccessRequestCache}. Large batches
+ * resolve the CUSTOMER role, the organisation members and the TEAM role of the project once and filter the users in
+ * memory, only users in none of them still go through the permission service, e.g. on open access service desks.
+ */
+@Component
+public class CustomerPortalAccessBatchChecker {
+
+    /**
+     * Below this many users, checking each of them is cheaper than loading every customer of the project
+     */
+    static final int MIN_USERS_FOR_PROJECT_LOOKUP = 50;
+
+    private final ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService;
+    private final CustomerContextService customerContextService;
+    private final ServiceDeskJiraRoleManager serviceDeskJIRARoleManager;
+    private final CustomerOrganizationMemberManager customerOrganizationMemberManager;
+
+    @Autowired
+    public CustomerPortalAccessBatchChecker(
+        final ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService,
+        final CustomerContextService customerContextService,
+        final ServiceDeskJiraRoleManager serviceDeskJIRARoleManager,
+        final CustomerOrganizationMemberManager customerOrganizationMemberManager
+    ) {
+        this.serviceDeskLicenseAndPermissionService = serviceDeskLicenseAndPermissionService;
+        this.customerContextService = customerContextService;
+        this.serviceDeskJIRARoleManager = serviceDeskJIRARoleManager;
+        this.customerOrganizationMemberManager = customerOrganizationMemberManager;
+    }
+
+    /**
+     * Check whether a user can view the portal of the request's project, or is an agent of the request.
+     * <p>
+     * This does not check whether the user is involved in the request.
+     */
+    public boolean hasPortalAccess(final CheckedUser user, final Issue issue) {
+        final Project project = issue.getProjectObject();
+        if (project == null) {
+            return false;
+        }
+        return customerContextService.runInCustomerContext(() -> hasPortalAccess(user, issue, project));
+    }
+
+    /**
+     * Filter the users that can view the portal of the request's project, or are agents of the request, entering the
+     * customer context only once.
+     * <p>
+     * This does not check whether the users are involved in the request.
+     *
+     * @return the users with access, in the order given
+     */
+    public List<CheckedUser> filterUsersWithPortalAccess(final Collection<CheckedUser> users, final Issue issue) {
+        final Project project = issue.getProjectObject();
+        if (project == null || users.isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        return customerContextService.runInCustomerContext(() -> inRequestCache(() -> {
+            final Predicate<CheckedUser> hasPortalAccess = users.size() < MIN_USERS_FOR_PROJECT_LOOKUP
+                ? user -> hasPortalAccess(user, issue, project)
+                : projectLookup(issue, project);
+            return ImmutableList.copyOf(users.stream().filter(hasPortalAccess).collect(toList()));
+        }));
+    }
+
+    /**
+     * Must be called in customer context. The role and organisation members are looked up once for all users, the
+     * permission service is only asked about the users that are not customers of the project. Customers of the role or an organisation can view the portal, like in
+     * {@link com.atlassian.servicedesk.internal.permission.security.type.CustomerPortalOnlyPermissionChecker}. Members
+     * of the TEAM role are checked as agents, the license of an agent is not known from the role.
+     */
+    private Predicate<CheckedUser> projectLookup(final Issue issue, final Project project) {
+        final Set<String> customerKeys = Stream.concat(
+            serviceDeskJIRARoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER).stream(),
+            customerOrganizationMemberManager.getOrganizationMembersForProject(project).stream()
+        ).map(ApplicationUser::getKey).collect(toSet());
+        final Set<String> teamKeys = serviceDeskJIRARoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.TEAM)
+            .stream()
+            .map(ApplicationUser::getKey)
+            .collect(toSet());
+
+        return user -> {
+            final String userKey = user.forJIRA().getKey();
+            return customerKeys.contains(userKey)
+                || serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(user, project)
+                || (teamKeys.contains(userKey) && serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(user, issue));
+        };
+    }
+
+    /**
+     * Must be called in customer context
+     */
+    boolean hasPortalAccess(final CheckedUser user, final Issue issue, final Project project) {
+        return serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(user, project)
+            || serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(user, issue); // should not be relevant for CustomerInvolvedService
+    }
+
+    private static <T> T inRequestCache(final Supplier<T> supplier) {
+        if (RequestCacheController.isInContext()) {
+            return supplier.get();
+        }
+
+        RequestCacheController.startContext();
+        try {
+            return supplier.get();
+        } finally {
+            RequestCacheController.closeContext();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.cache.request.RequestCacheController;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.permission.ServiceDeskLicenseAndPermissionService;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskProjectRole;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerPortalAccessBatchCheckerTest {
+
+    @Mock
+    private ServiceDeskLicenseAndPermissionService serviceDeskLicenseAndPermissionService;
+    @Mock
+    private CustomerContextService customerContextService;
+    @Mock
+    private ServiceDeskJiraRoleManager serviceDeskJiraRoleManager;
+    @Mock
+    private CustomerOrganizationMemberManager customerOrganizationMemberManager;
+    @Mock
+    private Issue issue;
+    @Mock
+    private Project project;
+
+    private CustomerPortalAccessBatchChecker batchChecker;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        batchChecker = new CustomerPortalAccessBatchChecker(serviceDeskLicenseAndPermissionService, customerContextService,
+            serviceDeskJiraRoleManager, customerOrganizationMemberManager);
+
+        when(customerContextService.runInCustomerContext(any(Supplier.class)))
+            .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+        when(issue.getProjectObject()).thenReturn(project);
+    }
+
+    @Test
+    public void every_user_of_a_small_batch_is_checked_by_the_permission_service() {
+        final List<CheckedUser> users = users(25);
+        final CheckedUser agent = users.get(0);
+        final CheckedUser customer = users.get(1);
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(customer, project)).thenReturn(true);
+        when(serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(agent, issue)).thenReturn(true);
+
+        assertThat(batchChecker.filterUsersWithPortalAccess(users, issue), contains(agent, customer));
+
+        verify(customerContextService, times(1)).runInCustomerContext(any(Supplier.class));
+        verify(serviceDeskLicenseAndPermissionService, times(users.size()))
+            .canViewPortalPermissionFixTransition(any(CheckedUser.class), any(Project.class));
+    }
+
+    @Test
+    public void large_batch_only_checks_users_that_are_no_customers_of_the_project() {
+        final List<CheckedUser> users = users(CustomerPortalAccessBatchChecker.MIN_USERS_FOR_PROJECT_LOOKUP);
+        final CheckedUser agent = users.get(0);
+        final CheckedUser customer = users.get(1);
+        final CheckedUser orgMember = users.get(2);
+        final CheckedUser openAccessUser = users.get(3);
+        when(serviceDeskJiraRoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER))
+            .thenReturn(ImmutableSet.of(customer.forJIRA()));
+        when(serviceDeskJiraRoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.TEAM))
+            .thenReturn(ImmutableSet.of(agent.forJIRA()));
+        when(customerOrganizationMemberManager.getOrganizationMembersForProject(project))
+            .thenReturn(ImmutableSet.of(orgMember.forJIRA()));
+        when(serviceDeskLicenseAndPermissionService.userIsAgentOfIssue(agent, issue)).thenReturn(true);
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(openAccessUser, project)).thenReturn(true);
+
+        assertThat(batchChecker.filterUsersWithPortalAccess(users, issue), contains(agent, customer, orgMember, openAccessUser));
+
+        verify(serviceDeskJiraRoleManager, times(1)).getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER);
+        verify(customerOrganizationMemberManager, times(1)).getOrganizationMembersForProject(project);
+        verify(serviceDeskLicenseAndPermissionService, never()).canViewPortalPermissionFixTransition(customer, project);
+        verify(serviceDeskLicenseAndPermissionService, never()).canViewPortalPermissionFixTransition(orgMember, project);
+        // only members of the TEAM role are asked about as agents
+        verify(serviceDeskLicenseAndPermissionService, times(1)).userIsAgentOfIssue(any(CheckedUser.class), any(Issue.class));
+    }
+
+    @Test
+    public void batch_shares_a_request_cache() {
+        final List<Boolean> inRequestCache = new ArrayList<>();
+        when(serviceDeskLicenseAndPermissionService.canViewPortalPermissionFixTransition(any(CheckedUser.class), any(Project.class)))
+            .thenAnswer(invocation -> inRequestCache.add(RequestCacheController.isInContext()));
+
+        batchChecker.filterUsersWithPortalAccess(users(2), issue);
+
+        assertThat(inRequestCache, contains(true, true));
+        assertThat(RequestCacheController.isInContext(), is(false));
+    }
+
+    private static List<CheckedUser> users(final int count) {
+        final List<CheckedUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final ApplicationUser applicationUser = mock(ApplicationUser.class);
+            when(applicationUser.getKey()).thenReturn("customer" + i);
+            when(applicationUser.isActive()).thenReturn(true);
+            final CheckedUser user = mock(CheckedUser.class);
+            when(user.forJIRA()).thenReturn(applicationUser);
+            users.add(user);
+        }
+        return users;
+    }
+}
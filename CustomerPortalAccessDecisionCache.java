@@ -0,0 +1,195 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.atlassian.crowd.event.directory.RemoteDirectorySynchronisedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipCreatedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipDeletedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipsCreatedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.role.ProjectRoleDeletedEvent;
+import com.atlassian.jira.event.role.ProjectRoleUpdatedEvent;
+import com.atlassian.jira.license.LicenseChangedEvent;
+import com.atlassian.jira.project.Project;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Caches whether a user is in the CUSTOMER role of a project, see {@link CustomerPortalOnlyPermissionChecker}.
+ * <p>
+ * Decisions are keyed by the generation of their project and a global generation, so {@link #invalidateProject} only
+ * bumps the generation instead of walking the keys of the cache, and a decision computed while an invalidation happens
+ * is stored under a generation that is never read again. Role, group and license changes are evented and clear the
+ * affected decisions. Entries are kept on this node only, the short expiry bounds the staleness of a change made on
+ * another node.
+ * <p>
+ * Open access, organisation membership and the outside customer context are not decided here, they must be checked
+ * outside of this cache.
+ */
+@Component
+public class CustomerPortalAccessDecisionCache implements InitializingBean, DisposableBean {
+
+    private static final String CACHE_NAME = CustomerPortalAccessDecisionCache.class.getName() + ".decisions";
+    private static final int MAX_ENTRIES = 10000;
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 1;
+
+    private final EventPublisher eventPublisher;
+    private final Cache<DecisionKey, Boolean> decisions;
+    private final AtomicLong generationCounter = new AtomicLong();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final ConcurrentMap<Long, Long> projectGenerations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CustomerPortalAccessDecisionCache(final CacheManager cacheManager, final EventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.decisions = cacheManager.getCache(CACHE_NAME, null, new CacheSettingsBuilder()
+            .local()
+            .maxEntries(MAX_ENTRIES)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, MINUTES)
+            .build());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        eventPublisher.unregister(this);
+    }
+
+    /**
+     * Returns the cached decision for the given user and project, computing and storing it with the given supplier on
+     * a miss
+     */
+    public boolean get(final CheckedUser user, final Project project, final BooleanSupplier decision) {
+        final String userKey = user == null || user.forJIRA() == null ? null : user.forJIRA().getKey();
+        if (userKey == null || project == null || project.getId() == null) {
+            return decision.getAsBoolean();
+        }
+
+        // the generations are read before the decision is computed, so an invalidation that happens meanwhile makes
+        // the stored decision unreachable
+        final DecisionKey key = new DecisionKey(userKey, project.getId(),
+            projectGenerations.getOrDefault(project.getId(), 0L), globalGeneration.get());
+        final Boolean cached = decisions.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final boolean result = decision.getAsBoolean();
+        decisions.put(key, result);
+        return result;
+    }
+
+    /**
+     * Clear the decisions of all users for the project, e.g. when its roles changed
+     */
+    public void invalidateProject(final Project project) {
+        if (project == null || project.getId() == null) {
+            invalidateAll();
+            return;
+        }
+        invalidateProject(project.getId());
+    }
+
+    private void invalidateProject(final long projectId) {
+        // the decisions of the previous generation are never read again and expire
+        projectGenerations.put(projectId, generationCounter.incrementAndGet());
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        decisions.removeAll();
+    }
+
+    // Events
+
+    @EventListener
+    public void onProjectRoleUpdated(final ProjectRoleUpdatedEvent event) {
+        invalidateProject(event.getProject());
+    }
+
+    @EventListener
+    public void onProjectRoleDeleted(final ProjectRoleDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipCreated(final GroupMembershipCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipsCreated(final GroupMembershipsCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipDeleted(final GroupMembershipDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onDirectorySynchronised(final RemoteDirectorySynchronisedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onLicenseChanged(final LicenseChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onClearCache(final ClearCacheEvent event) {
+        invalidateAll();
+    }
+
+    static final class DecisionKey {
+        private final String userKey;
+        private final long projectId;
+        private final long projectGeneration;
+        private final long globalGeneration;
+
+        DecisionKey(final String userKey, final long projectId, final long projectGeneration, final long globalGeneration) {
+            this.userKey = userKey;
+            this.projectId = projectId;
+            this.projectGeneration = projectGeneration;
+            this.globalGeneration = globalGeneration;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final DecisionKey that = (DecisionKey) o;
+            return projectId == that.projectId
+                && projectGeneration == that.projectGeneration
+                && globalGeneration == that.globalGeneration
+                && userKey.equals(that.userKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userKey, projectId, projectGeneration, globalGeneration);
+        }
+    }
+}
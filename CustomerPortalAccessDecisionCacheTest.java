@@ -0,0 +1,110 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerPortalAccessDecisionCacheTest {
+
+    private static final long PROJECT_ID = 10L;
+    private static final long OTHER_PROJECT_ID = 20L;
+
+    @Mock
+    private EventPublisher eventPublisher;
+    @Mock
+    private CheckedUser user;
+    @Mock
+    private ApplicationUser applicationUser;
+    @Mock
+    private Project project;
+    @Mock
+    private Project otherProject;
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private CustomerPortalAccessDecisionCache decisionCache;
+
+    @Before
+    public void setUp() {
+        decisionCache = new CustomerPortalAccessDecisionCache(new MemoryCacheManager(), eventPublisher);
+
+        when(user.forJIRA()).thenReturn(applicationUser);
+        when(applicationUser.getKey()).thenReturn("customer");
+        when(project.getId()).thenReturn(PROJECT_ID);
+        when(otherProject.getId()).thenReturn(OTHER_PROJECT_ID);
+    }
+
+    @Test
+    public void decision_is_evaluated_once_per_user_and_project() {
+        assertThat(decide(project), is(true));
+        assertThat(decide(project), is(true));
+
+        assertThat(evaluations.get(), is(1));
+    }
+
+    @Test
+    public void invalidating_a_project_keeps_the_decisions_of_other_projects() {
+        decide(project);
+        decide(otherProject);
+        decisionCache.invalidateProject(project);
+        decide(project);
+        decide(otherProject);
+
+        assertThat(evaluations.get(), is(3));
+    }
+
+    @Test
+    public void invalidating_everything_drops_the_decisions_of_all_projects() {
+        decide(project);
+        decide(otherProject);
+        decisionCache.invalidateAll();
+        decide(project);
+        decide(otherProject);
+
+        assertThat(evaluations.get(), is(4));
+    }
+
+    @Test
+    public void decision_computed_during_an_invalidation_is_not_kept() {
+        decisionCache.get(user, project, () -> {
+            evaluations.incrementAndGet();
+            decisionCache.invalidateAll();
+            return true;
+        });
+        decide(project);
+
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void decision_computed_during_a_project_invalidation_is_not_kept() {
+        decisionCache.get(user, project, () -> {
+            evaluations.incrementAndGet();
+            decisionCache.invalidateProject(project);
+            return true;
+        });
+        decide(project);
+
+        assertThat(evaluations.get(), is(2));
+    }
+
+    private boolean decide(final Project project) {
+        return decisionCache.get(user, project, () -> {
+            evaluations.incrementAndGet();
+            return true;
+        });
+    }
+}
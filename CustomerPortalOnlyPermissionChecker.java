@@ -4,30 +4,25 @@ import com.atlassian.jira.bc.user.search.UserSearchParams;
 import com.atlassian.jira.bc.user.search.UserSearchService;
 import com.atlassian.jira.config.FeatureManager;
 import com.atlassian.jira.issue.Issue;
-import com.atlassian.jira.permission.ProjectPermissions;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.security.plugin.ProjectPermissionKey;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.user.util.UserManager;
-import com.atlassian.pocketknife.api.commons.error.AnError;
-import com.atlassian.servicedesk.api.ServiceDesk;
 import com.atlassian.servicedesk.api.customer.CustomerContextService;
 import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags;
 import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
 import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
-import com.atlassian.servicedesk.internal.feature.servicedesk.InternalServiceDeskAccessManager;
-import com.atlassian.servicedesk.internal.feature.servicedesk.ServiceDeskInternalManager;
 import com.atlassian.servicedesk.internal.permission.security.RequestAccessUserStrategyManager;
 import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
 import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskProjectRole;
 import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
-import com.google.common.collect.ImmutableList;
-import io.atlassian.fugue.Either;
+import io.atlassian.fugue.Option;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
@@ -35,9 +30,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static io.atlassian.fugue.Suppliers.alwaysFalse;
 import static java.util.Collections.emptySet;
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Please don't use this class outside of this package.
@@ -49,65 +46,47 @@ public class CustomerPortalOnlyPermissionChecker {
 
     private final UserFactoryOld userFactoryOld;
     private final ServiceDeskJiraRoleManager serviceDeskJIRARoleManager;
-    private final ServiceDeskInternalManager serviceDeskManager;
-    private final InternalServiceDeskAccessManager internalServiceDeskAccessManager;
+    private final CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable;
     private final RequestAccessUserStrategyManager requestAccessUserStrategyManager;
     private final CustomerContextService customerContextService;
     private final CustomerOrganizationMemberManager customerOrganizationMemberManager;
     private final UserManager userManager;
     private final UserSearchService userSearchService;
     private final ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+    private final CustomerPortalAccessDecisionCache customerPortalAccessDecisionCache;
 
     private final FeatureManager featureManager;
 
-
-    //we need to have ProjectPermissionKey[] specifically for anonymous permission
-    //because JIRA does not provide a way check for hasPermission with a specific project permission key
-    //As a result, we need to rely on {@link ServiceDeskAnonymousPermissionOverride} to restrict
-    //permission access to other type of permissions
-    private static final List<ProjectPermissionKey> ANONYMOUS_PERMISSION = ImmutableList.of(
-        ProjectPermissions.BROWSE_PROJECTS,
-        ProjectPermissions.CREATE_ISSUES,
-        ProjectPermissions.CREATE_ATTACHMENTS,
-        ProjectPermissions.SCHEDULE_ISSUES
-    );
-
     @Autowired
     public CustomerPortalOnlyPermissionChecker(
             final CustomerContextService customerContextService,
             final UserFactoryOld userFactoryOld,
             final ServiceDeskJiraRoleManager serviceDeskJIRARoleManager,
-            final ServiceDeskInternalManager serviceDeskManager,
-            final InternalServiceDeskAccessManager internalServiceDeskAccessManager,
+            final CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable,
             final RequestAccessUserStrategyManager requestAccessUserStrategyManager,
             final CustomerOrganizationMemberManager customerOrganizationMemberManager,
             final UserManager userManager,
             final UserSearchService userSearchService,
             final ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext,
+            final CustomerPortalAccessDecisionCache customerPortalAccessDecisionCache,
             final FeatureManager featureManager) {
         this.customerContextService = customerContextService;
         this.userFactoryOld = userFactoryOld;
         this.serviceDeskJIRARoleManager = serviceDeskJIRARoleManager;
-        this.serviceDeskManager = serviceDeskManager;
-        this.internalServiceDeskAccessManager = internalServiceDeskAccessManager;
+        this.customerPortalPermissionDecisionTable = customerPortalPermissionDecisionTable;
         this.requestAccessUserStrategyManager = requestAccessUserStrategyManager;
         this.customerOrganizationMemberManager = customerOrganizationMemberManager;
         this.userManager = userManager;
         this.userSearchService = userSearchService;
         this.serviceDeskOutsideCustomerPermissionContext = serviceDeskOutsideCustomerPermissionContext;
+        this.customerPortalAccessDecisionCache = customerPortalAccessDecisionCache;
         this.featureManager = featureManager;
     }
 
     public Set<ApplicationUser> getCustomerPortalOnlyPermissionUsers(final Project project,
                                                                      final String query,
                                                                      final boolean includeInactiveUsers) {
-        // for now, allow this behaviour of retrieving all users to be disabled if the feature is off! Just to be sure
-        // this method is not used in any unexpected places
-        if (!featureManager.isEnabled(ServiceDeskFeatureFlags.USE_SEARCH_BY_PERMISSIONS)) {
-            return emptySet();
-        }
-
-        if (!customerContextService.isInCustomerContext()) {
+        if (!canEnumerateUsers()) {
             return emptySet();
         }
 
@@ -116,10 +95,67 @@ public class CustomerPortalOnlyPermissionChecker {
             return getUsers(query, includeInactiveUsers);
         }
 
+        return getCustomerUsers(project);
+    }
+
+    /**
+     * The users in the CUSTOMER role and the organisations of the project, without checking whether they may be listed
+     * in the current context
+     */
+    Set<ApplicationUser> getCustomerUsers(final Project project) {
         return Stream.concat(
             serviceDeskJIRARoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER).stream(),
-            getOrganizationMembersForProject(project)
-        ).collect(toSet());
+            customerOrganizationMemberManager.getOrganizationMembersForProject(project).stream()
+        ).collect(toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Get a page of the active users with the customer portal only permission of the project, ordered by user key.
+     * Users that are both in the CUSTOMER role and members of an organisation are only returned once.
+     * <p>
+     * The role and organisation managers only return whole collections, so every page still reads them, but only the
+     * users of the page are kept while streaming through them.
+     *
+     * @param limit the maximum number of users of the page
+     */
+    public CustomerPortalUsersPage getCustomerPortalOnlyPermissionUsers(final Project project,
+                                                                       final CustomerPortalUsersPage.Cursor cursor,
+                                                                       final int limit) {
+        checkArgument(limit > 0, "limit must be positive");
+        if (!canEnumerateUsers()) {
+            return CustomerPortalUsersPage.EMPTY;
+        }
+
+        final Stream<ApplicationUser> users = isOpenAccess(project)
+            ? userManager.getAllApplicationUsers().stream()
+            : Stream.concat(
+                serviceDeskJIRARoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER).stream(),
+                customerOrganizationMemberManager.getOrganizationMembersForProject(project).stream());
+
+        // the smallest keys after the cursor, one more than the page to know whether there is a next page
+        final TreeMap<String, ApplicationUser> usersByKey = new TreeMap<>();
+        users.filter(user -> user.isActive() && cursor.isBefore(user.getKey())).forEach(user -> {
+            usersByKey.putIfAbsent(user.getKey(), user);
+            if (usersByKey.size() > limit + 1) {
+                usersByKey.pollLastEntry();
+            }
+        });
+
+        final List<ApplicationUser> page = usersByKey.values().stream().limit(limit).collect(toList());
+        final Option<CustomerPortalUsersPage.Cursor> next = usersByKey.size() > limit
+            ? Option.some(CustomerPortalUsersPage.Cursor.after(page.get(limit - 1).getKey()))
+            : Option.none();
+        return new CustomerPortalUsersPage(page, next);
+    }
+
+    /**
+     * Whether the users with the customer portal only permission may be listed in the current context
+     */
+    boolean canEnumerateUsers() {
+        // for now, allow this behaviour of retrieving all users to be disabled if the feature is off! Just to be sure
+        // this method is not used in any unexpected places
+        return featureManager.isEnabled(ServiceDeskFeatureFlags.USE_SEARCH_BY_PERMISSIONS)
+            && customerContextService.isInCustomerContext();
     }
 
     /**
@@ -141,21 +177,11 @@ public class CustomerPortalOnlyPermissionChecker {
      */
     public boolean hasCustomerPortalOnlyPermissionForAnonymous(Project project) {
         return customerContextService.isInCustomerContext() &&
-            featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN) &&
-            hasAnonymousAccess(project);
-    }
-
-    private boolean hasAnonymousAccess(final Project project) {
-        final Either<AnError, ServiceDesk> serviceDeskEither = serviceDeskManager.getServiceDesk(project, false);
-        return serviceDeskEither.map(internalServiceDeskAccessManager::isAnonymousAccessAllowed).getOrElse(false);
+            customerPortalPermissionDecisionTable.allowsAnonymousAccess(project);
     }
 
     public boolean isValidForAnonymousPermission(final ProjectPermissionKey permissionKey) {
-        if (!featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN)) {
-            return false;
-        } else {
-            return ANONYMOUS_PERMISSION.stream().anyMatch(permission -> permission.equals(permissionKey));
-        }
+        return customerPortalPermissionDecisionTable.isValidForAnonymousPermission(permissionKey);
     }
 
     /**
@@ -180,15 +206,17 @@ public class CustomerPortalOnlyPermissionChecker {
     }
 
     private boolean allowUserToAccessPortal(CheckedUser checkedUser, Project project) {
+        // the access settings are read on every call, organisation changes are not evented and the outside customer
+        // context is request scoped, so only the role decision is cached
         return isOpenAccess(project) ||
-            serviceDeskJIRARoleManager.isUserInRole(checkedUser, project, ServiceDeskProjectRole.CUSTOMER) ||
+            customerPortalAccessDecisionCache.get(checkedUser, project, () ->
+                serviceDeskJIRARoleManager.isUserInRole(checkedUser, project, ServiceDeskProjectRole.CUSTOMER)) ||
             isMemberOfAnyOrganisationsInProject(checkedUser, project) ||
             serviceDeskOutsideCustomerPermissionContext.isInProjectOutsideCustomerContext(checkedUser, project);
     }
 
-    private boolean isOpenAccess(Project project) {
-        Either<AnError, ServiceDesk> serviceDeskEither = serviceDeskManager.getServiceDesk(project, false);
-        return serviceDeskEither.exists(internalServiceDeskAccessManager::isOpenAccess);
+    boolean isOpenAccess(Project project) {
+        return customerPortalPermissionDecisionTable.isOpenAccess(project);
     }
 
     private boolean isMemberOfAnyOrganisationsInProject(CheckedUser checkedUser, Project project) {
@@ -216,8 +244,4 @@ public class CustomerPortalOnlyPermissionChecker {
 
         return new LinkedHashSet<>(userSearchService.findUsers(query, allUsersSearchParams));
     }
-
-    private Stream<ApplicationUser> getOrganizationMembersForProject(Project project) {
-        return customerOrganizationMemberManager.getOrganizationMembersForProject(project).stream();
-    }
 }
@@ -0,0 +1,133 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.bc.user.search.UserSearchService;
+import com.atlassian.jira.config.FeatureManager;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.user.util.UserManager;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags;
+import com.atlassian.servicedesk.internal.api.user.UserFactoryOld;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.permission.security.RequestAccessUserStrategyManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskProjectRole;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.google.common.collect.ImmutableSet;
+import io.atlassian.fugue.Option;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerPortalOnlyPermissionCheckerTest {
+
+    @Mock
+    private CustomerContextService customerContextService;
+    @Mock
+    private UserFactoryOld userFactoryOld;
+    @Mock
+    private ServiceDeskJiraRoleManager serviceDeskJiraRoleManager;
+    @Mock
+    private CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable;
+    @Mock
+    private RequestAccessUserStrategyManager requestAccessUserStrategyManager;
+    @Mock
+    private CustomerOrganizationMemberManager customerOrganizationMemberManager;
+    @Mock
+    private UserManager userManager;
+    @Mock
+    private UserSearchService userSearchService;
+    @Mock
+    private ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+    @Mock
+    private CustomerPortalAccessDecisionCache customerPortalAccessDecisionCache;
+    @Mock
+    private FeatureManager featureManager;
+    @Mock
+    private Project project;
+
+    private ApplicationUser alice;
+    private ApplicationUser bob;
+    private ApplicationUser carol;
+    private ApplicationUser inactive;
+    private CustomerPortalOnlyPermissionChecker permissionChecker;
+
+    @Before
+    public void setUp() {
+        alice = user("alice", true);
+        bob = user("bob", true);
+        carol = user("carol", true);
+        inactive = user("dave", false);
+
+        when(featureManager.isEnabled(ServiceDeskFeatureFlags.USE_SEARCH_BY_PERMISSIONS)).thenReturn(true);
+        when(customerContextService.isInCustomerContext()).thenReturn(true);
+        when(serviceDeskJiraRoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER))
+            .thenReturn(ImmutableSet.of(carol, alice));
+        when(customerOrganizationMemberManager.getOrganizationMembersForProject(project))
+            .thenReturn(ImmutableSet.of(alice, inactive, bob));
+
+        permissionChecker = new CustomerPortalOnlyPermissionChecker(customerContextService, userFactoryOld,
+            serviceDeskJiraRoleManager, customerPortalPermissionDecisionTable, requestAccessUserStrategyManager,
+            customerOrganizationMemberManager, userManager, userSearchService, serviceDeskOutsideCustomerPermissionContext,
+            customerPortalAccessDecisionCache, featureManager);
+    }
+
+    @Test
+    public void users_of_the_role_and_organisations_are_paged_once_by_key() {
+        final CustomerPortalUsersPage firstPage = permissionChecker.getCustomerPortalOnlyPermissionUsers(project,
+            CustomerPortalUsersPage.Cursor.start(), 2);
+        assertThat(firstPage.getUsers(), contains(alice, bob));
+        assertThat(firstPage.getNext(), is(Option.some(CustomerPortalUsersPage.Cursor.after("bob"))));
+
+        final CustomerPortalUsersPage lastPage = permissionChecker.getCustomerPortalOnlyPermissionUsers(project,
+            firstPage.getNext().get(), 2);
+        assertThat(lastPage.getUsers(), contains(carol));
+        assertThat(lastPage.getNext().isDefined(), is(false));
+    }
+
+    @Test
+    public void users_added_before_the_cursor_do_not_shift_the_next_page() {
+        when(serviceDeskJiraRoleManager.getAllUsersInRole(project, ServiceDeskProjectRole.CUSTOMER))
+            .thenReturn(ImmutableSet.of(carol, alice, user("aaron", true)));
+
+        final CustomerPortalUsersPage page = permissionChecker.getCustomerPortalOnlyPermissionUsers(project,
+            CustomerPortalUsersPage.Cursor.after("alice"), 1);
+
+        assertThat(page.getUsers(), contains(bob));
+        assertThat(page.getNext(), is(Option.some(CustomerPortalUsersPage.Cursor.after("bob"))));
+    }
+
+    @Test
+    public void open_access_pages_all_active_users() {
+        when(customerPortalPermissionDecisionTable.isOpenAccess(project)).thenReturn(true);
+        when(userManager.getAllApplicationUsers()).thenReturn(ImmutableSet.of(inactive, carol, bob));
+
+        assertThat(permissionChecker.getCustomerPortalOnlyPermissionUsers(project,
+            CustomerPortalUsersPage.Cursor.start(), 10).getUsers(), contains(bob, carol));
+    }
+
+    @Test
+    public void users_are_not_paged_outside_of_the_customer_context() {
+        when(customerContextService.isInCustomerContext()).thenReturn(false);
+
+        assertThat(permissionChecker.getCustomerPortalOnlyPermissionUsers(project,
+            CustomerPortalUsersPage.Cursor.start(), 10).getUsers(), is(empty()));
+    }
+
+    private static ApplicationUser user(final String key, final boolean active) {
+        final ApplicationUser user = mock(ApplicationUser.class);
+        when(user.getKey()).thenReturn(key);
+        when(user.isActive()).thenReturn(active);
+        return user;
+    }
+}
@@ -1,8 +1,18 @@
 package com.atlassian.servicedesk.internal.permission.security.type;
 
+import com.atlassian.jira.permission.PermissionContext;
 import com.atlassian.jira.security.type.SecurityType;
 
 public interface CustomerPortalOnlySecurityType extends SecurityType {
 
     String TYPE = "sd.customer.portal.only";
+
+    /**
+     * Get a page of the active users with this permission in the project of the context, ordered by user key, without
+     * keeping all of them in memory. Start with {@link CustomerPortalUsersPage.Cursor#start()} and pass the cursor of
+     * each page to get the next one.
+     *
+     * @param limit the maximum number of users of the page
+     */
+    CustomerPortalUsersPage getUsers(PermissionContext permissionContext, CustomerPortalUsersPage.Cursor cursor, int limit);
 }
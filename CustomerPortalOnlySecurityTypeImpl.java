@@ -4,12 +4,12 @@ import com.atlassian.crowd.embedded.impl.IdentifierUtils;
 import com.atlassian.jira.bc.JiraServiceContext;
 import com.atlassian.jira.issue.Issue;
 import com.atlassian.jira.permission.PermissionContext;
-import com.atlassian.jira.permission.ProjectPermissions;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.security.plugin.ProjectPermissionKey;
 import com.atlassian.jira.security.type.AbstractProjectsSecurityType;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.I18nHelper;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -32,38 +32,20 @@ public class CustomerPortalOnlySecurityTypeImpl
     private static final Logger log = LoggerFactory.getLogger(CustomerPortalOnlySecurityTypeImpl.class);
     private static final String DISPLAY_NAME = "sd.permission.security.type.display";
     private static final String EMPTY_QUERY = "";
-    // These fields are the only ones that users are able to add the CustomerPortalOnlySecurityType to.
-    private static final ProjectPermissionKey[] RELEVANT_PERMISSIONS = new ProjectPermissionKey[]{
-        ProjectPermissions.BROWSE_PROJECTS,
-        ProjectPermissions.CREATE_ISSUES,
-        ProjectPermissions.ADD_COMMENTS,
-        ProjectPermissions.CREATE_ATTACHMENTS,
-        ProjectPermissions.TRANSITION_ISSUES,
-        ProjectPermissions.ASSIGN_ISSUES, // so the assignee field can be pre-set in the form
-        ProjectPermissions.LINK_ISSUES, // so default issue links can be pre-set in the form
-        ProjectPermissions.SCHEDULE_ISSUES, // for setting due date
-        ProjectPermissions.SET_ISSUE_SECURITY, // so the issue security field can be pre-set in the form
-        ProjectPermissions.EDIT_ISSUES,     // required so that participants can be added (edits the custom field)
-        // Everything below this line is just future proofing. We don't actually need to grant these to people in the Customer role
-        ProjectPermissions.MOVE_ISSUES,
-        ProjectPermissions.RESOLVE_ISSUES,
-        ProjectPermissions.CLOSE_ISSUES,
-        ProjectPermissions.MODIFY_REPORTER,
-        ProjectPermissions.DELETE_ISSUES,
-        ProjectPermissions.VIEW_VOTERS_AND_WATCHERS,
-        ProjectPermissions.MANAGE_WATCHERS,
-        ProjectPermissions.EDIT_OWN_COMMENTS,
-        ProjectPermissions.DELETE_OWN_COMMENTS,
-        ProjectPermissions.DELETE_OWN_ATTACHMENTS
-    };
 
     private final I18nHelper i18nHelper;
     private final CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker;
+    private final CustomerPortalUserSearchIndex customerPortalUserSearchIndex;
+    private final CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable;
 
     public CustomerPortalOnlySecurityTypeImpl(I18nHelper i18nHelper,
-                                              CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker) {
+                                              CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker,
+                                              CustomerPortalUserSearchIndex customerPortalUserSearchIndex,
+                                              CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable) {
         this.i18nHelper = i18nHelper;
         this.customerPortalOnlyPermissionChecker = customerPortalOnlyPermissionChecker;
+        this.customerPortalUserSearchIndex = customerPortalUserSearchIndex;
+        this.customerPortalPermissionDecisionTable = customerPortalPermissionDecisionTable;
     }
 
     @Override
@@ -81,12 +63,7 @@ public class CustomerPortalOnlySecurityTypeImpl
      */
     @Override
     public boolean isValidForPermission(ProjectPermissionKey permissionKey) {
-        for (ProjectPermissionKey permission : RELEVANT_PERMISSIONS) {
-            if (permission.equals(permissionKey)) {
-                return true;
-            }
-        }
-        return false;
+        return customerPortalPermissionDecisionTable.isValidForPermission(permissionKey);
     }
 
     @Override
@@ -111,6 +88,20 @@ public class CustomerPortalOnlySecurityTypeImpl
         return customerPortalOnlyPermissionChecker.getCustomerPortalOnlyPermissionUsers(project, EMPTY_QUERY, true);
     }
 
+    @Override
+    public CustomerPortalUsersPage getUsers(final PermissionContext permissionContext,
+                                           final CustomerPortalUsersPage.Cursor cursor,
+                                           final int limit) {
+        final Project project = permissionContext.getProjectObject();
+        if (project == null) {
+            log.warn("returning no users because project in the permission context was null");
+
+            return CustomerPortalUsersPage.EMPTY;
+        }
+
+        return customerPortalOnlyPermissionChecker.getCustomerPortalOnlyPermissionUsers(project, cursor, limit);
+    }
+
     @Nonnull
     @Override
     public Set<ApplicationUser> getUsers(@Nonnull final PermissionContext permissionContext,
@@ -124,6 +115,11 @@ public class CustomerPortalOnlySecurityTypeImpl
             return emptySet();
         }
 
+        // open access desks search all users of the instance by query already, every other desk uses the index
+        if (customerPortalOnlyPermissionChecker.canEnumerateUsers() && !customerPortalOnlyPermissionChecker.isOpenAccess(project)) {
+            return new LinkedHashSet<>(customerPortalUserSearchIndex.search(project, userSearchName, limit));
+        }
+
         return customerPortalOnlyPermissionChecker.getCustomerPortalOnlyPermissionUsers(project, userSearchName, false)
             .stream()
             .sorted(comparing(ApplicationUser::getDisplayName, comparing(IdentifierUtils::toLowerCase))
@@ -0,0 +1,133 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.config.FeatureManager;
+import com.atlassian.jira.permission.ProjectPermissions;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.plugin.ProjectPermissionKey;
+import com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The permissions the {@link CustomerPortalOnlySecurityType} can grant, compiled into bit flags per permission key, and
+ * the access settings of a project.
+ * <p>
+ * Jira asks the security type for every permission evaluation, so these are answered with a map lookup and bit tests
+ * rather than walking the permission lists. The table is compiled when the security type is installed. The delay login
+ * feature is read on every call, and the access settings of a project come from the
+ * {@link ServiceDeskAccessRequestCache}, so access setting changes apply from the next request on. Only the setting that
+ * is asked for is looked up.
+ */
+@Component
+public class CustomerPortalPermissionDecisionTable {
+
+    // permission flags
+    private static final int CUSTOMER_PERMISSION = 1;
+    private static final int ANONYMOUS_PERMISSION = 1 << 1;
+
+    // These fields are the only ones that users are able to add the CustomerPortalOnlySecurityType to.
+    private static final List<ProjectPermissionKey> RELEVANT_PERMISSIONS = ImmutableList.of(
+        ProjectPermissions.BROWSE_PROJECTS,
+        ProjectPermissions.CREATE_ISSUES,
+        ProjectPermissions.ADD_COMMENTS,
+        ProjectPermissions.CREATE_ATTACHMENTS,
+        ProjectPermissions.TRANSITION_ISSUES,
+        ProjectPermissions.ASSIGN_ISSUES, // so the assignee field can be pre-set in the form
+        ProjectPermissions.LINK_ISSUES, // so default issue links can be pre-set in the form
+        ProjectPermissions.SCHEDULE_ISSUES, // for setting due date
+        ProjectPermissions.SET_ISSUE_SECURITY, // so the issue security field can be pre-set in the form
+        ProjectPermissions.EDIT_ISSUES,     // required so that participants can be added (edits the custom field)
+        // Everything below this line is just future proofing. We don't actually need to grant these to people in the Customer role
+        ProjectPermissions.MOVE_ISSUES,
+        ProjectPermissions.RESOLVE_ISSUES,
+        ProjectPermissions.CLOSE_ISSUES,
+        ProjectPermissions.MODIFY_REPORTER,
+        ProjectPermissions.DELETE_ISSUES,
+        ProjectPermissions.VIEW_VOTERS_AND_WATCHERS,
+        ProjectPermissions.MANAGE_WATCHERS,
+        ProjectPermissions.EDIT_OWN_COMMENTS,
+        ProjectPermissions.DELETE_OWN_COMMENTS,
+        ProjectPermissions.DELETE_OWN_ATTACHMENTS
+    );
+
+    //we need to have ProjectPermissionKey[] specifically for anonymous permission
+    //because JIRA does not provide a way check for hasPermission with a specific project permission key
+    //As a result, we need to rely on {@link ServiceDeskAnonymousPermissionOverride} to restrict
+    //permission access to other type of permissions
+    private static final List<ProjectPermissionKey> ANONYMOUS_PERMISSIONS = ImmutableList.of(
+        ProjectPermissions.BROWSE_PROJECTS,
+        ProjectPermissions.CREATE_ISSUES,
+        ProjectPermissions.CREATE_ATTACHMENTS,
+        ProjectPermissions.SCHEDULE_ISSUES
+    );
+
+    private final FeatureManager featureManager;
+    private final ServiceDeskAccessRequestCache serviceDeskAccessRequestCache;
+
+    private volatile Map<ProjectPermissionKey, Integer> permissionFlags;
+
+    @Autowired
+    public CustomerPortalPermissionDecisionTable(final FeatureManager featureManager,
+                                                 final ServiceDeskAccessRequestCache serviceDeskAccessRequestCache) {
+        this.featureManager = featureManager;
+        this.serviceDeskAccessRequestCache = serviceDeskAccessRequestCache;
+    }
+
+    /**
+     * Compile the permission flags of the table
+     */
+    public void compile() {
+        final Map<ProjectPermissionKey, Integer> flags = new HashMap<>();
+        RELEVANT_PERMISSIONS.forEach(permission -> flags.merge(permission, CUSTOMER_PERMISSION, (a, b) -> a | b));
+        ANONYMOUS_PERMISSIONS.forEach(permission -> flags.merge(permission, ANONYMOUS_PERMISSION, (a, b) -> a | b));
+        permissionFlags = ImmutableMap.copyOf(flags);
+    }
+
+    /**
+     * @see CustomerPortalOnlySecurityType#isValidForPermission
+     */
+    public boolean isValidForPermission(final ProjectPermissionKey permissionKey) {
+        return (getPermissionFlags(permissionKey) & CUSTOMER_PERMISSION) != 0;
+    }
+
+    /**
+     * Whether anonymous users can ever be granted the permission, i.e. delay login is enabled
+     */
+    public boolean isValidForAnonymousPermission(final ProjectPermissionKey permissionKey) {
+        return isDelayLoginEnabled() && (getPermissionFlags(permissionKey) & ANONYMOUS_PERMISSION) != 0;
+    }
+
+    public boolean isOpenAccess(final Project project) {
+        return serviceDeskAccessRequestCache.isOpenAccess(project);
+    }
+
+    /**
+     * Whether delay login is enabled and the project allows anonymous access
+     */
+    public boolean allowsAnonymousAccess(final Project project) {
+        return isDelayLoginEnabled() && serviceDeskAccessRequestCache.isAnonymousAccessAllowed(project);
+    }
+
+    /**
+     * The feature manager caches the flags itself, so reading them on every call keeps toggles effective at once
+     */
+    private boolean isDelayLoginEnabled() {
+        return featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN);
+    }
+
+    private int getPermissionFlags(final ProjectPermissionKey permissionKey) {
+        Map<ProjectPermissionKey, Integer> flags = permissionFlags;
+        if (flags == null) {
+            // asked before the security type was installed
+            compile();
+            flags = permissionFlags;
+        }
+        final Integer permission = permissionKey == null ? null : flags.get(permissionKey);
+        return permission == null ? 0 : permission;
+    }
+}
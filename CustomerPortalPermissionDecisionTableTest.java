@@ -0,0 +1,85 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.config.FeatureManager;
+import com.atlassian.jira.permission.ProjectPermissions;
+import com.atlassian.jira.project.Project;
+import com.atlassian.servicedesk.internal.api.featureflag.ServiceDeskFeatureFlags;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerPortalPermissionDecisionTableTest {
+
+    @Mock
+    private FeatureManager featureManager;
+    @Mock
+    private ServiceDeskAccessRequestCache serviceDeskAccessRequestCache;
+    @Mock
+    private Project project;
+
+    private CustomerPortalPermissionDecisionTable table;
+
+    @Before
+    public void setUp() {
+        when(featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN)).thenReturn(true);
+        table = new CustomerPortalPermissionDecisionTable(featureManager, serviceDeskAccessRequestCache);
+        table.compile();
+    }
+
+    @Test
+    public void only_relevant_permissions_are_valid() {
+        assertThat(table.isValidForPermission(ProjectPermissions.BROWSE_PROJECTS), is(true));
+        assertThat(table.isValidForPermission(ProjectPermissions.DELETE_OWN_ATTACHMENTS), is(true));
+        assertThat(table.isValidForPermission(ProjectPermissions.ADMINISTER_PROJECTS), is(false));
+        assertThat(table.isValidForPermission(null), is(false));
+    }
+
+    @Test
+    public void anonymous_permissions_require_delay_login() {
+        assertThat(table.isValidForAnonymousPermission(ProjectPermissions.CREATE_ISSUES), is(true));
+        assertThat(table.isValidForAnonymousPermission(ProjectPermissions.ADD_COMMENTS), is(false));
+
+        when(featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN)).thenReturn(false);
+
+        assertThat(table.isValidForAnonymousPermission(ProjectPermissions.CREATE_ISSUES), is(false));
+    }
+
+    @Test
+    public void delay_login_is_read_on_every_call() {
+        table.isValidForAnonymousPermission(ProjectPermissions.CREATE_ISSUES);
+        table.isValidForAnonymousPermission(ProjectPermissions.BROWSE_PROJECTS);
+
+        verify(featureManager, times(2)).isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN);
+    }
+
+    @Test
+    public void open_access_is_read_from_the_access_settings() {
+        when(serviceDeskAccessRequestCache.isOpenAccess(project)).thenReturn(true);
+
+        assertThat(table.isOpenAccess(project), is(true));
+        verify(serviceDeskAccessRequestCache, never()).isAnonymousAccessAllowed(project);
+    }
+
+    @Test
+    public void anonymous_access_requires_delay_login() {
+        when(serviceDeskAccessRequestCache.isAnonymousAccessAllowed(project)).thenReturn(true);
+        assertThat(table.allowsAnonymousAccess(project), is(true));
+
+        when(featureManager.isEnabled(ServiceDeskFeatureFlags.DELAY_LOGIN)).thenReturn(false);
+        assertThat(table.allowsAnonymousAccess(project), is(false));
+
+        // without delay login the access settings are not looked up
+        verify(serviceDeskAccessRequestCache, times(1)).isAnonymousAccessAllowed(project);
+        verify(serviceDeskAccessRequestCache, never()).isOpenAccess(project);
+    }
+}
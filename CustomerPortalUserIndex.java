@@ -0,0 +1,207 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.crowd.embedded.impl.IdentifierUtils;
+import com.atlassian.jira.user.ApplicationUser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.atlassian.jira.bc.user.search.UserSearchUtilities.userSearchMatchUser;
+
+/**
+ * An immutable prefix index of the customers of a project, see {@link CustomerPortalUserSearchIndex}.
+ * <p>
+ * Users are stored in the order of the user picker (display name, then username, case insensitive) together with the
+ * lowercase keys of their display name, username and email address, computed once at build time. Every word start of
+ * a key is a token, stored as the key and an offset into it rather than a copy of the suffix, and the tokens are sorted
+ * by the suffix they start. A prefix search is therefore a binary search over the tokens and finds every user the user
+ * picker would match, including queries spanning several words. As users are numbered in picker order, the top K
+ * matches are simply the K lowest matching numbers.
+ */
+final class CustomerPortalUserIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int KEYS_PER_USER = 3;
+    private static final int USERNAME_KEY = 1;
+
+    private static final Comparator<Entry> PICKER_ORDER = Comparator
+        .comparing((Entry entry) -> entry.displayNameKey)
+        .thenComparing(entry -> entry.usernameKey);
+
+    private final ApplicationUser[] users;
+    private final String[] keys;
+    private final int[] tokenKeys;
+    private final int[] tokenOffsets;
+
+    private CustomerPortalUserIndex(final ApplicationUser[] users,
+                                    final String[] keys,
+                                    final int[] tokenKeys,
+                                    final int[] tokenOffsets) {
+        this.users = users;
+        this.keys = keys;
+        this.tokenKeys = tokenKeys;
+        this.tokenOffsets = tokenOffsets;
+    }
+
+    static CustomerPortalUserIndex build(final Collection<ApplicationUser> customers) {
+        final List<Entry> entries = new ArrayList<>(customers.size());
+        for (final ApplicationUser customer : customers) {
+            entries.add(new Entry(customer));
+        }
+        entries.sort(PICKER_ORDER);
+
+        final ApplicationUser[] users = new ApplicationUser[entries.size()];
+        final String[] keys = new String[entries.size() * KEYS_PER_USER];
+        final List<Integer> tokenKeyList = new ArrayList<>(keys.length * 2);
+        final List<Integer> tokenOffsetList = new ArrayList<>(keys.length * 2);
+        for (int i = 0; i < users.length; i++) {
+            final Entry entry = entries.get(i);
+            users[i] = entry.user;
+            keys[i * KEYS_PER_USER] = entry.displayNameKey;
+            keys[i * KEYS_PER_USER + USERNAME_KEY] = entry.usernameKey;
+            keys[i * KEYS_PER_USER + 2] = toKey(entry.user.getEmailAddress());
+        }
+        for (int key = 0; key < keys.length; key++) {
+            addTokens(tokenKeyList, tokenOffsetList, keys[key], key);
+        }
+
+        final Integer[] order = new Integer[tokenKeyList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> compareSuffixes(
+            keys[tokenKeyList.get(left)], tokenOffsetList.get(left),
+            keys[tokenKeyList.get(right)], tokenOffsetList.get(right)));
+
+        final int[] tokenKeys = new int[order.length];
+        final int[] tokenOffsets = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            tokenKeys[i] = tokenKeyList.get(order[i]);
+            tokenOffsets[i] = tokenOffsetList.get(order[i]);
+        }
+        return new CustomerPortalUserIndex(users, keys, tokenKeys, tokenOffsets);
+    }
+
+    int size() {
+        return users.length;
+    }
+
+    /**
+     * @return whether a user with the given username is in this index
+     */
+    boolean containsUsername(final String username) {
+        final String usernameKey = toKey(username);
+        for (int i = 0; i < users.length; i++) {
+            if (keys[i * KEYS_PER_USER + USERNAME_KEY].equals(usernameKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return at most limit users matching the query, in user picker order
+     */
+    List<ApplicationUser> search(final String query, final int limit) {
+        final List<ApplicationUser> result = new ArrayList<>(Math.min(limit, users.length));
+        final String prefix = toKey(query).trim();
+        if (prefix.isEmpty()) {
+            for (int i = 0; i < users.length && result.size() < limit; i++) {
+                addIfMatching(result, users[i], query);
+            }
+            return result;
+        }
+
+        final BitSet candidates = new BitSet(users.length);
+        for (int i = firstTokenAtOrAfter(prefix);
+             i < tokenKeys.length && keys[tokenKeys[i]].startsWith(prefix, tokenOffsets[i]);
+             i++) {
+            candidates.set(tokenKeys[i] / KEYS_PER_USER);
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0 && result.size() < limit; i = candidates.nextSetBit(i + 1)) {
+            // the index may be broader than the user picker, it has the final say
+            addIfMatching(result, users[i], query);
+        }
+        return result;
+    }
+
+    private int firstTokenAtOrAfter(final String prefix) {
+        int low = 0;
+        int high = tokenKeys.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compareSuffixes(keys[tokenKeys[middle]], tokenOffsets[middle], prefix, 0) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void addIfMatching(final List<ApplicationUser> result, final ApplicationUser user, final String query) {
+        if (userSearchMatchUser(user, query)) {
+            result.add(user);
+        }
+    }
+
+    /**
+     * Index the whole value and every word after a separator, so a query spanning several words, e.g. "ann smi" for
+     * "Mary Ann Smith", is still a prefix of a token
+     */
+    private static void addTokens(final List<Integer> tokenKeys,
+                                  final List<Integer> tokenOffsets,
+                                  final String key,
+                                  final int keyIndex) {
+        if (key.isEmpty()) {
+            return;
+        }
+        tokenKeys.add(keyIndex);
+        tokenOffsets.add(0);
+        final Matcher separators = SEPARATORS.matcher(key);
+        while (separators.find()) {
+            if (separators.end() < key.length()) {
+                tokenKeys.add(keyIndex);
+                tokenOffsets.add(separators.end());
+            }
+        }
+    }
+
+    /**
+     * Compares the suffixes of two strings like {@link String#compareTo}, without copying them
+     */
+    private static int compareSuffixes(final String left, final int leftOffset, final String right, final int rightOffset) {
+        final int leftLength = left.length() - leftOffset;
+        final int rightLength = right.length() - rightOffset;
+        final int length = Math.min(leftLength, rightLength);
+        for (int i = 0; i < length; i++) {
+            final char leftChar = left.charAt(leftOffset + i);
+            final char rightChar = right.charAt(rightOffset + i);
+            if (leftChar != rightChar) {
+                return leftChar - rightChar;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    private static String toKey(final String value) {
+        return value == null ? "" : IdentifierUtils.toLowerCase(value);
+    }
+
+    private static final class Entry {
+        private final ApplicationUser user;
+        private final String displayNameKey;
+        private final String usernameKey;
+
+        Entry(final ApplicationUser user) {
+            this.user = user;
+            this.displayNameKey = toKey(user.getDisplayName());
+            this.usernameKey = toKey(user.getUsername());
+        }
+    }
+}
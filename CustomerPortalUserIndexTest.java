@@ -0,0 +1,72 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.user.ApplicationUser;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CustomerPortalUserIndexTest {
+
+    private ApplicationUser bob;
+    private ApplicationUser alice;
+    private ApplicationUser carl;
+    private ApplicationUser mary;
+
+    private CustomerPortalUserIndex index;
+
+    @Before
+    public void setUp() {
+        bob = user("Bob Smith", "bob", "bob@example.com");
+        alice = user("alice Jones", "ajones", "alice@example.com");
+        carl = user("Carl Alison", "carl", "carl@example.com");
+        mary = user("Mary Ann Smith", "mary", "mary@example.com");
+
+        index = CustomerPortalUserIndex.build(ImmutableList.of(bob, alice, carl, mary));
+    }
+
+    @Test
+    public void empty_query_returns_the_first_users_in_picker_order() {
+        assertThat(index.search("", 2), contains(alice, bob));
+    }
+
+    @Test
+    public void prefix_of_any_name_token_matches_in_picker_order() {
+        assertThat(index.search("Al", 10), contains(alice, carl));
+        assertThat(index.search("smi", 10), contains(bob, mary));
+        assertThat(index.search("zed", 10), empty());
+    }
+
+    @Test
+    public void query_spanning_several_words_matches_from_any_word() {
+        assertThat(index.search("ann smi", 10), contains(mary));
+        assertThat(index.search("mary ann s", 10), contains(mary));
+    }
+
+    @Test
+    public void users_are_found_by_username() {
+        assertThat(index.containsUsername("Mary"), is(true));
+        assertThat(index.containsUsername("zed"), is(false));
+    }
+
+    @Test
+    public void search_stops_at_the_limit() {
+        assertThat(index.search("al", 1), contains(alice));
+    }
+
+    private static ApplicationUser user(final String displayName, final String username, final String email) {
+        final ApplicationUser user = mock(ApplicationUser.class);
+        when(user.getDisplayName()).thenReturn(displayName);
+        when(user.getUsername()).thenReturn(username);
+        when(user.getName()).thenReturn(username);
+        when(user.getEmailAddress()).thenReturn(email);
+        when(user.isActive()).thenReturn(true);
+        return user;
+    }
+}
@@ -0,0 +1,228 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.atlassian.crowd.event.directory.RemoteDirectorySynchronisedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipCreatedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipDeletedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipsCreatedEvent;
+import com.atlassian.crowd.event.user.UserEditedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.role.ProjectRoleDeletedEvent;
+import com.atlassian.jira.event.role.ProjectRoleUpdatedEvent;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Answers user picker searches for the customers of a project from a {@link CustomerPortalUserIndex}, instead of
+ * loading, sorting and filtering every customer of the project on each keystroke.
+ * <p>
+ * The index of a project is built on the first search and kept on this node only, as it holds user objects. Role,
+ * group and user changes mark the affected indexes as stale: they keep answering searches while a single background
+ * thread rebuilds them, so no event and no search pays for a rebuild. An edited user only marks the indexes that
+ * contain them. Organisation changes are not evented, the short expiry bounds their staleness.
+ */
+@Component
+public class CustomerPortalUserSearchIndex implements InitializingBean, DisposableBean {
+
+    private static final String CACHE_NAME = CustomerPortalUserSearchIndex.class.getName() + ".indexes";
+    private static final int MAX_PROJECTS = 100;
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 5;
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerPortalUserSearchIndex.class);
+
+    private final CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker;
+    private final ProjectManager projectManager;
+    private final EventPublisher eventPublisher;
+    private final ExecutorService rebuildExecutor;
+    private final Runnable preCall;
+    private final Runnable postCall;
+    private final Cache<Long, CustomerPortalUserIndex> indexes;
+    private final Set<Long> staleProjectIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public CustomerPortalUserSearchIndex(final CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker,
+                                         final ProjectManager projectManager,
+                                         final CacheManager cacheManager,
+                                         final EventPublisher eventPublisher) {
+        this(customerPortalOnlyPermissionChecker, projectManager, cacheManager, eventPublisher,
+            Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("sd-customer-portal-user-index-%d")
+                .setDaemon(true)
+                .build()),
+            JiraThreadLocalUtils::preCall,
+            () -> JiraThreadLocalUtils.postCall(log));
+    }
+
+    CustomerPortalUserSearchIndex(final CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker,
+                                  final ProjectManager projectManager,
+                                  final CacheManager cacheManager,
+                                  final EventPublisher eventPublisher,
+                                  final ExecutorService rebuildExecutor,
+                                  final Runnable preCall,
+                                  final Runnable postCall) {
+        this.customerPortalOnlyPermissionChecker = customerPortalOnlyPermissionChecker;
+        this.projectManager = projectManager;
+        this.eventPublisher = eventPublisher;
+        this.rebuildExecutor = rebuildExecutor;
+        this.preCall = preCall;
+        this.postCall = postCall;
+        this.indexes = cacheManager.getCache(CACHE_NAME, this::loadIndex, new CacheSettingsBuilder()
+            .local()
+            .maxEntries(MAX_PROJECTS)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, MINUTES)
+            .build());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        eventPublisher.unregister(this);
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Search the customers of a project that is not open to everyone. Must only be called when the caller may
+     * enumerate the customers, see {@link CustomerPortalOnlyPermissionChecker#canEnumerateUsers()}.
+     *
+     * @return at most limit customers matching the query, in user picker order
+     */
+    public List<ApplicationUser> search(final Project project, final String query, final int limit) {
+        if (project.getId() == null) {
+            return buildIndex(project).search(query, limit);
+        }
+
+        final long projectId = project.getId();
+        if (staleProjectIds.remove(projectId)) {
+            scheduleRebuild(projectId);
+        }
+        return indexes.get(projectId).search(query, limit);
+    }
+
+    private void scheduleRebuild(final long projectId) {
+        try {
+            rebuildExecutor.execute(() -> {
+                preCall.run();
+                try {
+                    indexes.put(projectId, loadIndex(projectId));
+                } catch (RuntimeException e) {
+                    log.warn("Rebuilding the customer portal user index of project {} failed", projectId, e);
+                    indexes.remove(projectId);
+                } finally {
+                    postCall.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down, the next search builds the index
+            indexes.remove(projectId);
+        }
+    }
+
+    private CustomerPortalUserIndex loadIndex(final Long projectId) {
+        final Project project = projectManager.getProjectObj(projectId);
+        return project == null ? CustomerPortalUserIndex.build(emptySet()) : buildIndex(project);
+    }
+
+    private CustomerPortalUserIndex buildIndex(final Project project) {
+        // the caller has checked that the customers may be listed, the rebuild thread has no customer context
+        return CustomerPortalUserIndex.build(customerPortalOnlyPermissionChecker.getCustomerUsers(project));
+    }
+
+    /**
+     * Rebuild the index of the project in the background, e.g. when its roles changed
+     */
+    public void invalidateProject(final Project project) {
+        if (project == null || project.getId() == null) {
+            invalidateAll();
+            return;
+        }
+        staleProjectIds.add(project.getId());
+    }
+
+    /**
+     * Rebuild every index in the background
+     */
+    public void invalidateAll() {
+        invalidateIf(index -> true);
+    }
+
+    private void invalidateIf(final Predicate<CustomerPortalUserIndex> affected) {
+        for (final Long projectId : indexes.getKeys()) {
+            final CustomerPortalUserIndex index = indexes.getIfPresent(projectId);
+            if (index != null && affected.test(index)) {
+                staleProjectIds.add(projectId);
+            }
+        }
+    }
+
+    // Events
+
+    @EventListener
+    public void onProjectRoleUpdated(final ProjectRoleUpdatedEvent event) {
+        invalidateProject(event.getProject());
+    }
+
+    @EventListener
+    public void onProjectRoleDeleted(final ProjectRoleDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onUserEdited(final UserEditedEvent event) {
+        // only the indexes holding the user have tokens of their names
+        final String username = event.getUser().getName();
+        invalidateIf(index -> index.containsUsername(username));
+    }
+
+    @EventListener
+    public void onGroupMembershipCreated(final GroupMembershipCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipsCreated(final GroupMembershipsCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipDeleted(final GroupMembershipDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onDirectorySynchronised(final RemoteDirectorySynchronisedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onClearCache(final ClearCacheEvent event) {
+        staleProjectIds.clear();
+        indexes.removeAll();
+    }
+}
@@ -0,0 +1,112 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.crowd.event.user.UserEditedEvent;
+import com.atlassian.crowd.model.user.User;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.user.ApplicationUser;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CustomerPortalUserSearchIndexTest {
+
+    private static final long PROJECT_ID = 10L;
+    private static final long OTHER_PROJECT_ID = 20L;
+
+    @Mock
+    private CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker;
+    @Mock
+    private ProjectManager projectManager;
+    @Mock
+    private EventPublisher eventPublisher;
+    @Mock
+    private ExecutorService rebuildExecutor;
+    @Mock
+    private Project project;
+    @Mock
+    private Project otherProject;
+
+    private final List<Runnable> rebuilds = new ArrayList<>();
+
+    private ApplicationUser alice;
+    private ApplicationUser bob;
+    private CustomerPortalUserSearchIndex searchIndex;
+
+    @Before
+    public void setUp() {
+        alice = user("Alice Jones", "alice");
+        bob = user("Bob Smith", "bob");
+
+        when(project.getId()).thenReturn(PROJECT_ID);
+        when(otherProject.getId()).thenReturn(OTHER_PROJECT_ID);
+        when(projectManager.getProjectObj(PROJECT_ID)).thenReturn(project);
+        when(projectManager.getProjectObj(OTHER_PROJECT_ID)).thenReturn(otherProject);
+        when(customerPortalOnlyPermissionChecker.getCustomerUsers(project)).thenReturn(ImmutableSet.of(alice));
+        when(customerPortalOnlyPermissionChecker.getCustomerUsers(otherProject)).thenReturn(ImmutableSet.of(bob));
+        doAnswer(invocation -> rebuilds.add(invocation.getArgument(0))).when(rebuildExecutor).execute(any(Runnable.class));
+
+        searchIndex = new CustomerPortalUserSearchIndex(customerPortalOnlyPermissionChecker, projectManager,
+            new MemoryCacheManager(), eventPublisher, rebuildExecutor, () -> { }, () -> { });
+    }
+
+    @Test
+    public void stale_index_answers_searches_while_it_is_rebuilt() {
+        assertThat(searchIndex.search(project, "alice", 10), contains(alice));
+        when(customerPortalOnlyPermissionChecker.getCustomerUsers(project)).thenReturn(ImmutableSet.of(alice, bob));
+
+        searchIndex.invalidateProject(project);
+
+        assertThat(searchIndex.search(project, "bob", 10), empty());
+        assertThat(rebuilds, hasSize(1));
+
+        rebuilds.get(0).run();
+
+        assertThat(searchIndex.search(project, "bob", 10), contains(bob));
+        assertThat(rebuilds, hasSize(1));
+    }
+
+    @Test
+    public void user_edits_only_rebuild_the_indexes_holding_the_user() {
+        searchIndex.search(project, "", 10);
+        searchIndex.search(otherProject, "", 10);
+
+        final User editedUser = mock(User.class);
+        when(editedUser.getName()).thenReturn("alice");
+        final UserEditedEvent event = mock(UserEditedEvent.class);
+        when(event.getUser()).thenReturn(editedUser);
+        searchIndex.onUserEdited(event);
+
+        searchIndex.search(project, "", 10);
+        searchIndex.search(otherProject, "", 10);
+
+        assertThat(rebuilds, hasSize(1));
+    }
+
+    private static ApplicationUser user(final String displayName, final String username) {
+        final ApplicationUser user = mock(ApplicationUser.class);
+        when(user.getDisplayName()).thenReturn(displayName);
+        when(user.getUsername()).thenReturn(username);
+        when(user.getName()).thenReturn(username);
+        when(user.isActive()).thenReturn(true);
+        return user;
+    }
+}
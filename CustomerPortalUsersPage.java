@@ -0,0 +1,99 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.user.ApplicationUser;
+import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Option;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A page of the users with the customer portal only permission of a project, see
+ * {@link CustomerPortalOnlySecurityType#getUsers(com.atlassian.jira.permission.PermissionContext,
+ * CustomerPortalUsersPage.Cursor, int)}
+ */
+public final class CustomerPortalUsersPage {
+
+    static final CustomerPortalUsersPage EMPTY = new CustomerPortalUsersPage(ImmutableList.of(), Option.none());
+
+    private final List<ApplicationUser> users;
+    private final Option<Cursor> next;
+
+    CustomerPortalUsersPage(final List<ApplicationUser> users, final Option<Cursor> next) {
+        this.users = ImmutableList.copyOf(users);
+        this.next = next;
+    }
+
+    public List<ApplicationUser> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the cursor of the next page, none if there are no more users
+     */
+    public Option<Cursor> getNext() {
+        return next;
+    }
+
+    /**
+     * Position in the users of a project, which are ordered by user key: the last user key returned before. Pages are
+     * computed from the current users, so a user added in between shows up on a later page if its key sorts after the
+     * cursor, and a removed user never shifts the pages.
+     */
+    public static final class Cursor {
+
+        private static final Cursor START = new Cursor(Option.none());
+
+        private final Option<String> afterUserKey;
+
+        private Cursor(final Option<String> afterUserKey) {
+            this.afterUserKey = afterUserKey;
+        }
+
+        public static Cursor start() {
+            return START;
+        }
+
+        /**
+         * Restore a cursor to the users after the given user key, e.g. from request parameters
+         */
+        public static Cursor after(final String userKey) {
+            return new Cursor(Option.some(checkNotNull(userKey, "userKey")));
+        }
+
+        /**
+         * @return the key of the last user returned before, none to start with the first user
+         */
+        public Option<String> getAfterUserKey() {
+            return afterUserKey;
+        }
+
+        /**
+         * @return whether the user of the key belongs to a page after this cursor
+         */
+        boolean isBefore(final String userKey) {
+            return afterUserKey.forall(afterKey -> userKey.compareTo(afterKey) > 0);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Cursor)) {
+                return false;
+            }
+            return afterUserKey.equals(((Cursor) o).afterUserKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return afterUserKey.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor{afterUserKey=" + afterUserKey.getOrNull() + '}';
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.permission.security.CustomerInvolvedService;
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import java.util.EnumSet;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * The operations of {@link CustomerInvolvedServiceImpl} on top of the {@link CustomerInvolvedService} API, which is
+ * defined outside of this module.
+ */
+public interface ExtendedCustomerInvolvedService extends CustomerInvolvedService {
+
+    /**
+     * Get a page of the permission checked members of a request. Members are ordered by the strategy that returns them
+     * first, in the order of {@link #getMembers(Issue)}, and by user key within a strategy.
+     * <p>
+     * Only the strategies up to the one the page ends in are expanded, and permission checks stop as soon as the page is
+     * full. The cursor holds the strategy and the last user key the page ends at, so members added or removed between
+     * two pages never make a page repeat or skip the members that were there before.
+     *
+     * @param cursor where to start, {@link RequestMembersPage.Cursor#start()} for the first page
+     * @param limit  the maximum number of members of the page
+     */
+    RequestMembersPage getMembers(Issue issue, RequestMembersPage.Cursor cursor, int limit);
+
+    /**
+     * Get all types the user is involved as in the request, e.g. to show every role of the user on the portal at once.
+     * The strategies and the portal permission are evaluated once, instead of once per {@link #isUserOfType} call.
+     *
+     * @return the types, empty if the user is not involved or has no access to the portal
+     */
+    EnumSet<CustomerInvolvedType> getUserTypes(CheckedUser user, Issue issue);
+
+    /**
+     * Hand an issue event to its consumers, which share the members of the request resolved through this service, see
+     * {@link RequestMembersEventMemo}. The members are shared until the consumers return.
+     */
+    void withSharedMembers(Issue issue, Runnable consumers);
+
+    /**
+     * Like {@link #withSharedMembers(Issue, Runnable)} for consumers that complete on other threads, the members are
+     * shared until the returned stage of the consumers completes.
+     */
+    <T> CompletionStage<T> withSharedMembersAsync(Issue issue, Supplier<? extends CompletionStage<T>> consumers);
+}
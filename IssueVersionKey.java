@@ -0,0 +1,57 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.Objects;
+
+/**
+ * Identifies a specific version of an issue by its id and updated timestamp. Caches keyed by it naturally miss once
+ * the issue is updated.
+ */
+final class IssueVersionKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long issueId;
+    private final long updated;
+
+    private IssueVersionKey(final long issueId, final long updated) {
+        this.issueId = issueId;
+        this.updated = updated;
+    }
+
+    /**
+     * @return the key, or null if the issue has not been persisted yet
+     */
+    static IssueVersionKey of(final Issue issue) {
+        if (issue == null || issue.getId() == null) {
+            return null;
+        }
+        final Timestamp updated = issue.getUpdated();
+        if (updated == null) {
+            return null;
+        }
+        return new IssueVersionKey(issue.getId(), updated.getTime());
+    }
+
+    long getIssueId() {
+        return issueId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final IssueVersionKey that = (IssueVersionKey) o;
+        return issueId == that.issueId && updated == that.updated;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(issueId, updated);
+    }
+}
@@ -0,0 +1,183 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.atlassian.crowd.event.directory.RemoteDirectorySynchronisedEvent;
+import com.atlassian.crowd.event.group.GroupDeletedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipCreatedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipDeletedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipsCreatedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.user.ApplicationUser;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Caches the positive outcome of the request access strategies for a (user, issue) pair.
+ * <p>
+ * The key contains the issue updated timestamp, so editing the reporter or the participants field of a request
+ * naturally misses the cache. Group membership changes don't touch the issue, so they clear the whole cache. Only
+ * positive decisions are kept: a user who is added to a request or group is never denied from a stale entry, while a
+ * user who loses access is dropped by the issue update or the group event.
+ * <p>
+ * Only decisions of the built-in strategies whose changes either update the issue or are evented may be cached here
+ * (see {@link RequestAccessUserStrategyManagerImpl#isCacheable}). Every other strategy must be evaluated outside of
+ * this cache. Entries are kept on this node only, so a put never sends invalidations around the cluster; the short
+ * expiry bounds the staleness of a group change made on another node.
+ */
+@Component
+public class RequestAccessDecisionCache implements InitializingBean, DisposableBean {
+
+    private static final String CACHE_NAME = RequestAccessDecisionCache.class.getName() + ".decisions";
+    private static final int MAX_ENTRIES = 10000;
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 5;
+
+    private final EventPublisher eventPublisher;
+    private final RequestAccessMetrics metrics;
+    private final Cache<DecisionKey, Boolean> matches;
+
+    @Autowired
+    public RequestAccessDecisionCache(final CacheManager cacheManager,
+                                      final EventPublisher eventPublisher,
+                                      final RequestAccessMetrics metrics) {
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.matches = cacheManager.getCache(CACHE_NAME, null, new CacheSettingsBuilder()
+            .local()
+            .maxEntries(MAX_ENTRIES)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, MINUTES)
+            .build());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        eventPublisher.unregister(this);
+    }
+
+    /**
+     * Returns true if the user is known to match the issue, otherwise computes the decision with the given supplier
+     * and remembers it if it is positive. Users without a key and issues that have not been persisted yet are never
+     * cached.
+     */
+    public boolean get(final ApplicationUser user, final Issue issue, final BooleanSupplier decision) {
+        if (isKnownMatch(user, issue)) {
+            return true;
+        }
+
+        final boolean result = decision.getAsBoolean();
+        if (result) {
+            putMatch(user, issue);
+        }
+        return result;
+    }
+
+    /**
+     * @return whether a positive decision for the given user and issue is cached
+     */
+    public boolean isKnownMatch(final ApplicationUser user, final Issue issue) {
+        final DecisionKey key = DecisionKey.of(user, issue);
+        if (key == null) {
+            return false;
+        }
+
+        final boolean hit = matches.get(key) != null;
+        metrics.recordDecisionCacheLookup(hit);
+        return hit;
+    }
+
+    /**
+     * Remember that the user matches the issue
+     */
+    public void putMatch(final ApplicationUser user, final Issue issue) {
+        final DecisionKey key = DecisionKey.of(user, issue);
+        if (key != null) {
+            matches.put(key, Boolean.TRUE);
+        }
+    }
+
+    public void invalidateAll() {
+        matches.removeAll();
+    }
+
+    // Events
+
+    @EventListener
+    public void onGroupMembershipCreated(final GroupMembershipCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipsCreated(final GroupMembershipsCreatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipDeleted(final GroupMembershipDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupDeleted(final GroupDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onDirectorySynchronised(final RemoteDirectorySynchronisedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onClearCache(final ClearCacheEvent event) {
+        invalidateAll();
+    }
+
+    static final class DecisionKey {
+        private final String userKey;
+        private final IssueVersionKey issueVersion;
+
+        private DecisionKey(final String userKey, final IssueVersionKey issueVersion) {
+            this.userKey = userKey;
+            this.issueVersion = issueVersion;
+        }
+
+        static DecisionKey of(final ApplicationUser user, final Issue issue) {
+            final IssueVersionKey issueVersion = IssueVersionKey.of(issue);
+            if (user == null || user.getKey() == null || issueVersion == null) {
+                return null;
+            }
+            return new DecisionKey(user.getKey(), issueVersion);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final DecisionKey that = (DecisionKey) o;
+            return userKey.equals(that.userKey) && issueVersion.equals(that.issueVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userKey, issueVersion);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.crowd.event.group.GroupMembershipDeletedEvent;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.user.ApplicationUser;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessDecisionCacheTest {
+
+    private static final long ISSUE_ID = 10000L;
+
+    @Mock
+    private EventPublisher eventPublisher;
+    @Mock
+    private ApplicationUser user;
+    @Mock
+    private Issue issue;
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final RequestAccessMetrics metrics = new RequestAccessMetrics();
+
+    private RequestAccessDecisionCache decisionCache;
+
+    @Before
+    public void setUp() {
+        decisionCache = new RequestAccessDecisionCache(new MemoryCacheManager(), eventPublisher, metrics);
+
+        when(user.getKey()).thenReturn("customer");
+        when(issue.getId()).thenReturn(ISSUE_ID);
+        when(issue.getUpdated()).thenReturn(new Timestamp(1000L));
+    }
+
+    @Test
+    public void decision_is_evaluated_once_per_issue_version() {
+        assertThat(decide(), is(true));
+        assertThat(decide(), is(true));
+
+        assertThat(evaluations.get(), is(1));
+        assertThat(metrics.getDecisionCacheHits(), is(1L));
+        assertThat(metrics.getDecisionCacheMisses(), is(1L));
+    }
+
+    @Test
+    public void negative_decisions_are_not_cached() {
+        assertThat(decide(false), is(false));
+        assertThat(decide(false), is(false));
+        assertThat(decide(true), is(true));
+
+        assertThat(evaluations.get(), is(3));
+        assertThat(metrics.getDecisionCacheHits(), is(0L));
+    }
+
+    @Test
+    public void updating_the_issue_misses_the_cache() {
+        decide();
+        when(issue.getUpdated()).thenReturn(new Timestamp(2000L));
+        decide();
+
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void invalidate_all_drops_cached_decisions() {
+        decide();
+        decisionCache.invalidateAll();
+        decide();
+
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void group_membership_changes_drop_cached_decisions() {
+        decide();
+        decisionCache.onGroupMembershipDeleted(mock(GroupMembershipDeletedEvent.class));
+        decide();
+
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void issues_without_updated_timestamp_are_never_cached() {
+        when(issue.getUpdated()).thenReturn(null);
+
+        decide();
+        decide();
+
+        assertThat(evaluations.get(), is(2));
+        assertThat(metrics.getDecisionCacheMisses(), is(0L));
+    }
+
+    private boolean decide() {
+        return decide(true);
+    }
+
+    private boolean decide(final boolean decision) {
+        return decisionCache.get(user, issue, () -> {
+            evaluations.incrementAndGet();
+            return decision;
+        });
+    }
+}
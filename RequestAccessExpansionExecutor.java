@@ -0,0 +1,238 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.config.properties.JiraSystemProperties;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtils;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Expands the users of several request access strategies concurrently on a bounded pool.
+ * <p>
+ * This is opt-in via the {@value #PARALLEL_EXPANSION_PROPERTY} system property, the pool is only created once the
+ * first parallel expansion happens. When the pool is saturated the expansion runs on the calling thread, so this never
+ * performs worse than sequential expansion by more than the scheduling overhead. Expansions that are still waiting for a
+ * pool thread after {@value #TIMEOUT_PROPERTY} milliseconds are taken back and run on the calling thread, running ones
+ * are waited for, so no expansion is ever done twice.
+ * <p>
+ * Pool threads get fresh Jira thread locals (see {@link JiraThreadLocalUtils}) and the logged in user and the customer
+ * context of the caller. Strategies that may keep their state on the calling thread (see
+ * {@link RequestAccessUserStrategyManagerImpl#isPersistent}) are always expanded there.
+ */
+@Component
+class RequestAccessExpansionExecutor implements DisposableBean {
+
+    static final String PARALLEL_EXPANSION_PROPERTY = "servicedesk.request.access.parallel.expansion";
+    static final String POOL_SIZE_PROPERTY = "servicedesk.request.access.parallel.expansion.threads";
+    static final String TIMEOUT_PROPERTY = "servicedesk.request.access.parallel.expansion.timeout";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestAccessExpansionExecutor.class);
+
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_TIMEOUT_MILLIS = 5000;
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final JiraAuthenticationContext jiraAuthenticationContext;
+    private final CustomerContextService customerContextService;
+    private final boolean enabled;
+    private final int poolSize;
+    private final long timeoutMillis;
+    private final Runnable preCall;
+    private final Runnable postCall;
+
+    private volatile ThreadPoolExecutor executor;
+    private boolean destroyed;
+
+    @Autowired
+    public RequestAccessExpansionExecutor(final JiraAuthenticationContext jiraAuthenticationContext,
+                                          final CustomerContextService customerContextService) {
+        this(jiraAuthenticationContext,
+            customerContextService,
+            JiraSystemProperties.getInstance().getBoolean(PARALLEL_EXPANSION_PROPERTY),
+            JiraSystemProperties.getInstance().getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE),
+            JiraSystemProperties.getInstance().getInteger(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS),
+            JiraThreadLocalUtils::preCall,
+            () -> JiraThreadLocalUtils.postCall(log));
+    }
+
+    RequestAccessExpansionExecutor(final JiraAuthenticationContext jiraAuthenticationContext,
+                                   final CustomerContextService customerContextService,
+                                   final boolean enabled,
+                                   final int poolSize,
+                                   final long timeoutMillis,
+                                   final Runnable preCall,
+                                   final Runnable postCall) {
+        this.jiraAuthenticationContext = jiraAuthenticationContext;
+        this.customerContextService = customerContextService;
+        this.enabled = enabled;
+        this.poolSize = poolSize;
+        this.timeoutMillis = timeoutMillis;
+        this.preCall = preCall;
+        this.postCall = postCall;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        destroyed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            synchronized (this) {
+                if (destroyed) {
+                    throw new IllegalStateException("The request access expansion pool has been shut down");
+                }
+                pool = executor;
+                if (pool == null) {
+                    pool = new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        60, SECONDS,
+                        new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                        new ThreadFactoryBuilder()
+                            .setNameFormat("sd-request-access-expansion-%d")
+                            .setDaemon(true)
+                            .build(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Expands all given strategies concurrently with the given function and merges their users in strategy order,
+     * without duplicates.
+     */
+    Set<CheckedUser> expand(final List<RequestAccessUserStrategy> strategies,
+                            final Function<RequestAccessUserStrategy, List<CheckedUser>> usersOfStrategy) {
+        final Set<CheckedUser> members = new LinkedHashSet<>();
+        expandEach(strategies, usersOfStrategy).forEach(members::addAll);
+        return members;
+    }
+
+    /**
+     * Expands all given strategies concurrently with the given function.
+     *
+     * @return the users of each strategy, in strategy order
+     */
+    List<List<CheckedUser>> expandEach(final List<RequestAccessUserStrategy> strategies,
+                                       final Function<RequestAccessUserStrategy, List<CheckedUser>> usersOfStrategy) {
+        final List<Future<List<CheckedUser>>> expansions = new ArrayList<>(strategies.size());
+        for (final RequestAccessUserStrategy strategy : strategies) {
+            if (!RequestAccessUserStrategyManagerImpl.isPersistent(strategy)) {
+                expansions.add(CompletableFuture.completedFuture(usersOfStrategy.apply(strategy)));
+            } else {
+                // a FutureTask, so that cancelling interrupts the pool thread
+                expansions.add(getExecutor().submit(withCallerContext(() -> usersOfStrategy.apply(strategy))));
+            }
+        }
+
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        final List<List<CheckedUser>> usersOfStrategies = new ArrayList<>(expansions.size());
+        try {
+            for (int i = 0; i < expansions.size(); i++) {
+                final Future<List<CheckedUser>> expansion = expansions.get(i);
+                try {
+                    usersOfStrategies.add(expansion.get(Math.max(deadline - System.nanoTime(), 0), NANOSECONDS));
+                } catch (TimeoutException e) {
+                    takeBackQueued(strategies, expansions, i, usersOfStrategy);
+                    log.debug("Expanding {} timed out, waiting for it to finish", strategies.get(i).getType());
+                    usersOfStrategies.add(expansions.get(i).get());
+                }
+            }
+        } catch (ExecutionException e) {
+            expansions.forEach(expansion -> expansion.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            expansions.forEach(expansion -> expansion.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while expanding request members", e);
+        } catch (RuntimeException | Error e) {
+            expansions.forEach(expansion -> expansion.cancel(true));
+            throw e;
+        }
+        return usersOfStrategies;
+    }
+
+    /**
+     * Runs the expansions from the given index on that haven't been picked up by a pool thread yet on the calling
+     * thread instead, so it does useful work while the running ones finish
+     */
+    private void takeBackQueued(final List<RequestAccessUserStrategy> strategies,
+                                final List<Future<List<CheckedUser>>> expansions,
+                                final int fromIndex,
+                                final Function<RequestAccessUserStrategy, List<CheckedUser>> usersOfStrategy) {
+        final ThreadPoolExecutor pool = executor;
+        for (int i = fromIndex; i < expansions.size(); i++) {
+            final Future<List<CheckedUser>> expansion = expansions.get(i);
+            // only removed from the queue if no pool thread has started it
+            if (pool != null && expansion instanceof Runnable && pool.remove((Runnable) expansion)) {
+                log.debug("Expanding {} on the calling thread, the pool is busy", strategies.get(i).getType());
+                expansions.set(i, CompletableFuture.completedFuture(usersOfStrategy.apply(strategies.get(i))));
+            }
+        }
+    }
+
+    private <T> Callable<T> withCallerContext(final Supplier<T> task) {
+        final ApplicationUser callerUser = jiraAuthenticationContext.getLoggedInUser();
+        final boolean callerInCustomerContext = customerContextService.isInCustomerContext();
+        final Thread callerThread = Thread.currentThread();
+        return () -> {
+            // rejected tasks run on the calling thread, whose context is already in place
+            if (Thread.currentThread() == callerThread) {
+                return task.get();
+            }
+
+            preCall.run();
+            try {
+                jiraAuthenticationContext.setLoggedInUser(callerUser);
+                return callerInCustomerContext ? customerContextService.runInCustomerContext(task) : task.get();
+            } finally {
+                jiraAuthenticationContext.clearLoggedInUser();
+                postCall.run();
+            }
+        };
+    }
+}
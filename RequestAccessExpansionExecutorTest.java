@@ -0,0 +1,171 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessExpansionExecutorTest {
+
+    @Mock
+    private JiraAuthenticationContext jiraAuthenticationContext;
+    @Mock
+    private CustomerContextService customerContextService;
+    @Mock
+    private ApplicationUser caller;
+    @Mock
+    private ReporterRequestAccessUserStrategy reporterStrategy;
+    @Mock
+    private RequestParticipantRequestAccessUserStrategy participantStrategy;
+    @Mock
+    private CustomerOutsiderRequestAccessUserStrategy outsiderStrategy;
+    @Mock
+    private CheckedUser reporter;
+    @Mock
+    private CheckedUser participant;
+    @Mock
+    private CheckedUser outsider;
+
+    private final AtomicInteger preCalls = new AtomicInteger();
+    private final AtomicInteger postCalls = new AtomicInteger();
+    private final Map<RequestAccessUserStrategy, String> expandingThreads = new ConcurrentHashMap<>();
+
+    private RequestAccessExpansionExecutor executor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(jiraAuthenticationContext.getLoggedInUser()).thenReturn(caller);
+        when(customerContextService.isInCustomerContext()).thenReturn(true);
+        when(customerContextService.runInCustomerContext(any(Supplier.class)))
+            .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+    }
+
+    @After
+    public void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    public void pool_threads_get_the_caller_context() {
+        executor = createExecutor(SECONDS.toMillis(10));
+
+        final List<List<CheckedUser>> users = executor.expandEach(
+            ImmutableList.of(reporterStrategy, participantStrategy, outsiderStrategy), this::expand);
+
+        assertThat(users, contains(ImmutableList.of(reporter), ImmutableList.of(participant), ImmutableList.of(outsider)));
+        assertThat(expandingThreads.get(reporterStrategy), startsWith("sd-request-access-expansion-"));
+        assertThat(expandingThreads.get(participantStrategy), startsWith("sd-request-access-expansion-"));
+        verify(jiraAuthenticationContext, times(2)).setLoggedInUser(caller);
+        verify(jiraAuthenticationContext, times(2)).clearLoggedInUser();
+        verify(customerContextService, times(2)).runInCustomerContext(any(Supplier.class));
+        assertThat(preCalls.get(), is(2));
+        assertThat(postCalls.get(), is(2));
+    }
+
+    @Test
+    public void request_scoped_strategies_are_expanded_on_the_calling_thread() {
+        executor = createExecutor(SECONDS.toMillis(10));
+
+        executor.expandEach(ImmutableList.of(reporterStrategy, outsiderStrategy), this::expand);
+
+        assertThat(expandingThreads.get(outsiderStrategy), is(Thread.currentThread().getName()));
+        assertThat(expandingThreads.get(reporterStrategy), not(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void running_expansions_are_waited_for_after_the_timeout() {
+        executor = createExecutor(50);
+        final AtomicInteger expansions = new AtomicInteger();
+        final AtomicInteger interruptions = new AtomicInteger();
+
+        final List<List<CheckedUser>> users = executor.expandEach(ImmutableList.of(reporterStrategy), strategy -> {
+            expansions.incrementAndGet();
+            try {
+                new CountDownLatch(1).await(200, MILLISECONDS);
+            } catch (InterruptedException e) {
+                interruptions.incrementAndGet();
+            }
+            return ImmutableList.of(reporter);
+        });
+
+        assertThat(users, contains(ImmutableList.of(reporter)));
+        assertThat(expansions.get(), is(1));
+        assertThat(interruptions.get(), is(0));
+    }
+
+    @Test
+    public void expansions_still_queued_after_the_timeout_run_on_the_calling_thread() {
+        executor = createExecutor(1, 50);
+        final CountDownLatch participantExpanded = new CountDownLatch(1);
+
+        final List<List<CheckedUser>> users = executor.expandEach(ImmutableList.of(reporterStrategy, participantStrategy),
+            strategy -> {
+                if (strategy == reporterStrategy) {
+                    // keeps the only pool thread busy until the queued expansion was taken back
+                    try {
+                        participantExpanded.await(10, SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    participantExpanded.countDown();
+                }
+                return expand(strategy);
+            });
+
+        assertThat(users, contains(ImmutableList.of(reporter), ImmutableList.of(participant)));
+        assertThat(expandingThreads.get(participantStrategy), is(Thread.currentThread().getName()));
+        assertThat(expandingThreads.get(reporterStrategy), startsWith("sd-request-access-expansion-"));
+    }
+
+    private RequestAccessExpansionExecutor createExecutor(final long timeoutMillis) {
+        return createExecutor(2, timeoutMillis);
+    }
+
+    private RequestAccessExpansionExecutor createExecutor(final int poolSize, final long timeoutMillis) {
+        return new RequestAccessExpansionExecutor(
+            jiraAuthenticationContext,
+            customerContextService,
+            true,
+            poolSize,
+            timeoutMillis,
+            preCalls::incrementAndGet,
+            postCalls::incrementAndGet);
+    }
+
+    private List<CheckedUser> expand(final RequestAccessUserStrategy strategy) {
+        expandingThreads.put(strategy, Thread.currentThread().getName());
+        if (strategy == reporterStrategy) {
+            return ImmutableList.of(reporter);
+        }
+        return strategy == participantStrategy ? ImmutableList.of(participant) : ImmutableList.of(outsider);
+    }
+}
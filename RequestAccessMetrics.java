@@ -0,0 +1,280 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Records invocation counts, match hits and latency histograms of the request access strategies, per operation and
+ * strategy. Third party strategies registered through the
+ * {@link com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserProviderRegistry} are recorded
+ * too, keyed by their class name.
+ * <p>
+ * The hits and misses of the {@link RequestAccessDecisionCache} are recorded here as well. The numbers are exposed via
+ * JMX as {@value #OBJECT_NAME} and via the sysadmin REST resource.
+ */
+@Component
+@ExportAsService
+public class RequestAccessMetrics implements RequestAccessMetricsMXBean, InitializingBean, DisposableBean {
+
+    static final String OBJECT_NAME = "com.atlassian.servicedesk:type=RequestAccessMetrics";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestAccessMetrics.class);
+
+    /**
+     * Buckets of powers of two microseconds up to roughly one second, plus an overflow bucket
+     */
+    private static final int HISTOGRAM_BUCKETS = 22;
+
+    /**
+     * The key of {@link Operation#GET_MEMBERS}, which expands all types
+     */
+    private static final int ALL_TYPES = -1;
+
+    enum Operation {
+        MATCH,
+        GET_MEMBERS,
+        GET_USERS,
+        GET_MEMBERS_FOR_TYPES
+    }
+
+    /**
+     * Metrics of the operations on a single strategy, by operation and type, then by the class name of the strategy. No
+     * key is built on the recording path, and keeping class names rather than classes lets uninstalled third party
+     * strategies go
+     */
+    private final Map<Operation, Map<CustomerInvolvedType, ConcurrentMap<String, OperationMetrics>>> strategyMetrics =
+        new EnumMap<>(Operation.class);
+    /**
+     * Metrics of the operations on all strategies of some types, by operation and type mask
+     */
+    private final Map<Operation, ConcurrentMap<Integer, OperationMetrics>> typeMetrics = new EnumMap<>(Operation.class);
+    private final LongAdder decisionCacheHits = new LongAdder();
+    private final LongAdder decisionCacheMisses = new LongAdder();
+
+    public RequestAccessMetrics() {
+        // the enum maps are filled once here and only read afterwards, so they can be shared between threads
+        for (final Operation operation : EnumSet.of(Operation.MATCH, Operation.GET_USERS)) {
+            final Map<CustomerInvolvedType, ConcurrentMap<String, OperationMetrics>> byType =
+                new EnumMap<>(CustomerInvolvedType.class);
+            for (final CustomerInvolvedType type : CustomerInvolvedType.values()) {
+                byType.put(type, new ConcurrentHashMap<>());
+            }
+            strategyMetrics.put(operation, byType);
+        }
+        typeMetrics.put(Operation.GET_MEMBERS, new ConcurrentHashMap<>());
+        typeMetrics.put(Operation.GET_MEMBERS_FOR_TYPES, new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            // the bean from a previous plugin instance may still be around after a plugin upgrade
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            log.warn("Unable to register request access metrics with JMX", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Unable to unregister request access metrics from JMX", e);
+        }
+    }
+
+    // Recording
+
+    boolean timeMatch(final RequestAccessUserStrategy strategy, final BooleanSupplier match) {
+        final long start = System.nanoTime();
+        final boolean matched = match.getAsBoolean();
+        recordMatch(strategy, System.nanoTime() - start, matched);
+        return matched;
+    }
+
+    /**
+     * Records a match that was timed by the caller, e.g. the {@link RequestAccessStrategyScheduler}
+     */
+    void recordMatch(final RequestAccessUserStrategy strategy, final long elapsedNanos, final boolean matched) {
+        get(Operation.MATCH, strategy).record(elapsedNanos, matched);
+    }
+
+    void recordDecisionCacheLookup(final boolean hit) {
+        if (hit) {
+            decisionCacheHits.increment();
+        } else {
+            decisionCacheMisses.increment();
+        }
+    }
+
+    <T> T timeGetUsers(final RequestAccessUserStrategy strategy, final Supplier<T> getUsers) {
+        return time(get(Operation.GET_USERS, strategy), getUsers);
+    }
+
+    <T> T timeGetMembers(final Supplier<T> getMembers) {
+        return time(get(Operation.GET_MEMBERS, ALL_TYPES), getMembers);
+    }
+
+    <T> T timeGetMembersForTypes(final CustomerInvolvedType[] types, final Supplier<T> getMembers) {
+        return time(get(Operation.GET_MEMBERS_FOR_TYPES, RequestAccessStrategySnapshot.typeMask(types)), getMembers);
+    }
+
+    private static <T> T time(final OperationMetrics operationMetrics, final Supplier<T> supplier) {
+        final long start = System.nanoTime();
+        final T result = supplier.get();
+        operationMetrics.record(System.nanoTime() - start, false);
+        return result;
+    }
+
+    private OperationMetrics get(final Operation operation, final RequestAccessUserStrategy strategy) {
+        final CustomerInvolvedType type = strategy.getType();
+        final ConcurrentMap<String, OperationMetrics> byClassName = strategyMetrics.get(operation).get(type);
+        final String className = strategy.getClass().getName();
+        // look up first, computeIfAbsent may lock even if the metrics exist already
+        final OperationMetrics operationMetrics = byClassName.get(className);
+        return operationMetrics != null ? operationMetrics
+            : byClassName.computeIfAbsent(className, name -> new OperationMetrics(type.name() + "/" + name));
+    }
+
+    private OperationMetrics get(final Operation operation, final int typeMask) {
+        final ConcurrentMap<Integer, OperationMetrics> byTypeMask = typeMetrics.get(operation);
+        final OperationMetrics operationMetrics = byTypeMask.get(typeMask);
+        return operationMetrics != null ? operationMetrics
+            : byTypeMask.computeIfAbsent(typeMask, mask -> new OperationMetrics(typesName(mask)));
+    }
+
+    private static String typesName(final int typeMask) {
+        if (typeMask == ALL_TYPES) {
+            return "ALL";
+        }
+        return Arrays.stream(CustomerInvolvedType.values())
+            .filter(type -> (typeMask & (1 << type.ordinal())) != 0)
+            .map(Enum::name)
+            .sorted()
+            .collect(joining(","));
+    }
+
+    // Reporting
+
+    @Override
+    public Map<String, Long> getInvocations() {
+        return collect(operationMetrics -> operationMetrics.invocations.sum());
+    }
+
+    @Override
+    public Map<String, Long> getHits() {
+        return collect(operationMetrics -> operationMetrics.hits.sum());
+    }
+
+    @Override
+    public Map<String, Long> getTotalMicros() {
+        return collect(operationMetrics -> operationMetrics.nanos.sum() / 1000);
+    }
+
+    @Override
+    public Map<String, long[]> getLatencyHistogramMicros() {
+        return collectObjects(OperationMetrics::histogram);
+    }
+
+    @Override
+    public long getDecisionCacheHits() {
+        return decisionCacheHits.sum();
+    }
+
+    @Override
+    public long getDecisionCacheMisses() {
+        return decisionCacheMisses.sum();
+    }
+
+    @Override
+    public void reset() {
+        strategyMetrics.values().forEach(byType -> byType.values().forEach(Map::clear));
+        typeMetrics.values().forEach(Map::clear);
+        decisionCacheHits.reset();
+        decisionCacheMisses.reset();
+    }
+
+    private Map<String, Long> collect(final ToLongFunction<OperationMetrics> value) {
+        return collectObjects(operationMetrics -> value.applyAsLong(operationMetrics));
+    }
+
+    private <T> Map<String, T> collectObjects(final Function<OperationMetrics, T> value) {
+        final Map<String, T> collected = new TreeMap<>();
+        strategyMetrics.forEach((operation, byType) -> byType.values().forEach(byClassName ->
+            byClassName.values().forEach(operationMetrics -> put(collected, operation, operationMetrics, value))));
+        typeMetrics.forEach((operation, byTypeMask) ->
+            byTypeMask.values().forEach(operationMetrics -> put(collected, operation, operationMetrics, value)));
+        return collected;
+    }
+
+    private static <T> void put(final Map<String, T> collected,
+                                final Operation operation,
+                                final OperationMetrics operationMetrics,
+                                final Function<OperationMetrics, T> value) {
+        collected.put(operation.name() + ":" + operationMetrics.name, value.apply(operationMetrics));
+    }
+
+    private static final class OperationMetrics {
+        private final String name;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[HISTOGRAM_BUCKETS];
+
+        private OperationMetrics(final String name) {
+            this.name = name;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(final long elapsedNanos, final boolean hit) {
+            invocations.increment();
+            nanos.add(elapsedNanos);
+            if (hit) {
+                hits.increment();
+            }
+            final long micros = Math.max(elapsedNanos / 1000, 0);
+            final int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+        }
+
+        private long[] histogram() {
+            return Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray();
+        }
+    }
+}
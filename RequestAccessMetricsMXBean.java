@@ -0,0 +1,34 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RequestAccessMetrics}. All maps are keyed by {@code <operation>:<strategy type>/<strategy class>}
+ * for strategy operations, and by {@code <operation>:<member types>} for the member operations of the manager.
+ */
+public interface RequestAccessMetricsMXBean {
+
+    Map<String, Long> getInvocations();
+
+    Map<String, Long> getHits();
+
+    Map<String, Long> getTotalMicros();
+
+    /**
+     * Latency histogram per key, bucket {@code i} counts invocations that took less than {@code 2^i} microseconds. The
+     * last bucket counts everything slower.
+     */
+    Map<String, long[]> getLatencyHistogramMicros();
+
+    /**
+     * Lookups answered by the {@link RequestAccessDecisionCache}
+     */
+    long getDecisionCacheHits();
+
+    /**
+     * Lookups the {@link RequestAccessDecisionCache} had no positive decision for
+     */
+    long getDecisionCacheMisses();
+
+    void reset();
+}
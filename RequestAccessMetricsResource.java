@@ -0,0 +1,77 @@
+package com.atlassian.servicedesk.plugins.rest.internal.resource;
+
+import com.atlassian.jira.permission.GlobalPermissionKey;
+import com.atlassian.jira.security.GlobalPermissionManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.servicedesk.internal.permission.security.RequestAccessMetrics;
+import com.google.common.collect.ImmutableMap;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Exposes the request access strategy metrics to system administrators, see {@link RequestAccessMetrics}.
+ */
+@Path("requestaccess/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class RequestAccessMetricsResource {
+    private final JiraAuthenticationContext jiraAuthenticationContext;
+    private final GlobalPermissionManager globalPermissionManager;
+    private final RequestAccessMetrics requestAccessMetrics;
+
+    public RequestAccessMetricsResource(final JiraAuthenticationContext jiraAuthenticationContext,
+                                        final GlobalPermissionManager globalPermissionManager,
+                                        final RequestAccessMetrics requestAccessMetrics) {
+        this.jiraAuthenticationContext = jiraAuthenticationContext;
+        this.globalPermissionManager = globalPermissionManager;
+        this.requestAccessMetrics = requestAccessMetrics;
+    }
+
+    /**
+     * Returns invocation counts, match hits, total time and latency histograms per operation and strategy, and the hits
+     * and misses of the access decision cache.
+     *
+     * @response.representation.200.mediaType application/json
+     * @response.representation.200.doc Returns the metrics recorded since startup or the last reset.
+     * @response.representation.403.doc Returned if the user is not a system administrator.
+     */
+    @GET
+    public Response getMetrics() {
+        if (!isSysAdmin()) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        return Response.ok(ImmutableMap.of(
+            "invocations", requestAccessMetrics.getInvocations(),
+            "hits", requestAccessMetrics.getHits(),
+            "totalMicros", requestAccessMetrics.getTotalMicros(),
+            "latencyHistogramMicros", requestAccessMetrics.getLatencyHistogramMicros(),
+            "decisionCache", ImmutableMap.of(
+                "hits", requestAccessMetrics.getDecisionCacheHits(),
+                "misses", requestAccessMetrics.getDecisionCacheMisses())
+        )).build();
+    }
+
+    /**
+     * Resets all recorded metrics.
+     *
+     * @response.representation.204.doc Returned if the metrics were reset.
+     * @response.representation.403.doc Returned if the user is not a system administrator.
+     */
+    @DELETE
+    public Response resetMetrics() {
+        if (!isSysAdmin()) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        requestAccessMetrics.reset();
+        return Response.noContent().build();
+    }
+
+    private boolean isSysAdmin() {
+        return globalPermissionManager.hasPermission(GlobalPermissionKey.SYSTEM_ADMIN, jiraAuthenticationContext.getLoggedInUser());
+    }
+}
@@ -0,0 +1,70 @@
+package com.atlassian.servicedesk.plugins.rest.internal.resource;
+
+import com.atlassian.jira.permission.GlobalPermissionKey;
+import com.atlassian.jira.security.GlobalPermissionManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.internal.permission.security.RequestAccessMetrics;
+import java.util.Map;
+import javax.ws.rs.core.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessMetricsResourceTest {
+
+    @Mock
+    private JiraAuthenticationContext jiraAuthenticationContext;
+    @Mock
+    private GlobalPermissionManager globalPermissionManager;
+    @Mock
+    private RequestAccessMetrics requestAccessMetrics;
+    @Mock
+    private ApplicationUser user;
+
+    private RequestAccessMetricsResource resource;
+
+    @Before
+    public void setUp() {
+        when(jiraAuthenticationContext.getLoggedInUser()).thenReturn(user);
+        resource = new RequestAccessMetricsResource(jiraAuthenticationContext, globalPermissionManager, requestAccessMetrics);
+    }
+
+    @Test
+    public void metrics_are_forbidden_for_non_sysadmins() {
+        when(globalPermissionManager.hasPermission(GlobalPermissionKey.SYSTEM_ADMIN, user)).thenReturn(false);
+
+        assertThat(resource.getMetrics().getStatus(), is(Response.Status.FORBIDDEN.getStatusCode()));
+        assertThat(resource.resetMetrics().getStatus(), is(Response.Status.FORBIDDEN.getStatusCode()));
+        verify(requestAccessMetrics, never()).reset();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sysadmins_get_the_metrics() {
+        when(globalPermissionManager.hasPermission(GlobalPermissionKey.SYSTEM_ADMIN, user)).thenReturn(true);
+
+        final Response response = resource.getMetrics();
+
+        assertThat(response.getStatus(), is(Response.Status.OK.getStatusCode()));
+        assertThat((Map<String, Object>) response.getEntity(), hasKey("latencyHistogramMicros"));
+    }
+
+    @Test
+    public void sysadmins_can_reset_the_metrics() {
+        when(globalPermissionManager.hasPermission(GlobalPermissionKey.SYSTEM_ADMIN, user)).thenReturn(true);
+
+        assertThat(resource.resetMetrics().getStatus(), is(Response.Status.NO_CONTENT.getStatusCode()));
+        verify(requestAccessMetrics).reset();
+    }
+}
@@ -0,0 +1,108 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessMetricsTest {
+
+    @Mock
+    private RequestAccessUserStrategy strategy;
+
+    private final RequestAccessMetrics metrics = new RequestAccessMetrics();
+
+    private String matchKey;
+
+    @Before
+    public void setUp() {
+        when(strategy.getType()).thenReturn(CustomerInvolvedType.REPORTER);
+        matchKey = "MATCH:REPORTER/" + strategy.getClass().getName();
+    }
+
+    @After
+    public void tearDown() {
+        metrics.destroy();
+    }
+
+    @Test
+    public void matches_are_recorded_per_strategy() {
+        metrics.recordMatch(strategy, MICROSECONDS.toNanos(3), true);
+        metrics.recordMatch(strategy, MICROSECONDS.toNanos(3), false);
+
+        assertThat(metrics.getInvocations(), hasEntry(matchKey, 2L));
+        assertThat(metrics.getHits(), hasEntry(matchKey, 1L));
+        assertThat(metrics.getTotalMicros(), hasEntry(matchKey, 6L));
+        // 3 microseconds fall into the bucket of less than 4 microseconds
+        assertThat(metrics.getLatencyHistogramMicros().get(matchKey)[2], is(2L));
+    }
+
+    @Test
+    public void members_are_recorded_per_requested_types() {
+        metrics.timeGetMembers(() -> null);
+        metrics.timeGetMembersForTypes(
+            new CustomerInvolvedType[]{CustomerInvolvedType.REQUEST_PARTICIPANT, CustomerInvolvedType.REPORTER}, () -> null);
+        metrics.timeGetMembersForTypes(
+            new CustomerInvolvedType[]{CustomerInvolvedType.REPORTER, CustomerInvolvedType.REQUEST_PARTICIPANT}, () -> null);
+
+        assertThat(metrics.getInvocations(), hasEntry("GET_MEMBERS:ALL", 1L));
+        assertThat(metrics.getInvocations(), hasEntry("GET_MEMBERS_FOR_TYPES:REPORTER,REQUEST_PARTICIPANT", 2L));
+    }
+
+    @Test
+    public void reset_drops_all_metrics() {
+        metrics.recordMatch(strategy, 1000, true);
+        metrics.timeGetMembers(() -> null);
+
+        metrics.reset();
+
+        assertThat(metrics.getInvocations(), is(anEmptyMap()));
+    }
+
+    @Test
+    public void decision_cache_lookups_are_counted_and_reset() {
+        metrics.recordDecisionCacheLookup(true);
+        metrics.recordDecisionCacheLookup(false);
+        metrics.recordDecisionCacheLookup(false);
+
+        assertThat(metrics.getDecisionCacheHits(), is(1L));
+        assertThat(metrics.getDecisionCacheMisses(), is(2L));
+
+        metrics.reset();
+
+        assertThat(metrics.getDecisionCacheHits(), is(0L));
+        assertThat(metrics.getDecisionCacheMisses(), is(0L));
+    }
+
+    @Test
+    public void metrics_are_exposed_via_jmx_while_the_plugin_is_enabled() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(RequestAccessMetrics.OBJECT_NAME);
+        metrics.recordMatch(strategy, 1000, true);
+
+        metrics.afterPropertiesSet();
+
+        assertThat(mBeanServer.isRegistered(objectName), is(true));
+        assertThat(mBeanServer.getAttribute(objectName, "Invocations"), is(notNullValue()));
+
+        metrics.destroy();
+
+        assertThat(mBeanServer.isRegistered(objectName), is(false));
+    }
+}
@@ -0,0 +1,213 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Decides in which order the registered strategies are tried when we only need to know whether <i>any</i> of them
+ * matches.
+ * <p>
+ * Every evaluation records the latency and the outcome of the strategy. Periodically the strategies are re-sorted by
+ * their expected cost per hit (average latency divided by hit rate), so that cheap, high-yield strategies such as the
+ * reporter check run before expensive organisation or group expansions. The averages decay by {@link #DECAY} per
+ * interval, so the order follows changes in cost, e.g. an organisation that grew, instead of being pinned by the
+ * samples of the past. Strategies without samples keep their registration order.
+ * <p>
+ * This ordering must not be used where the registration order is part of the contract, e.g. when collecting members.
+ * <p>
+ * Callers count one evaluation per access check with {@link #countEvaluation()}, however many passes over the
+ * strategies the check needed. The re-sort runs on the thread that completes an interval and never blocks the others.
+ */
+final class RequestAccessStrategyScheduler {
+
+    /**
+     * Number of access checks between two re-sorts of the evaluation order
+     */
+    static final int REORDER_INTERVAL = 1024;
+
+    /**
+     * Weight of the previous intervals in the averages at every re-sort, the samples of an interval count half as much
+     * with every interval after it
+     */
+    static final double DECAY = 0.5;
+
+    private final LongSupplier ticker;
+    private final EvaluationListener listener;
+    private final AtomicLong evaluationsSinceReorder = new AtomicLong();
+
+    private final AtomicReference<Schedule> schedule = new AtomicReference<>(Schedule.EMPTY);
+
+    RequestAccessStrategyScheduler(final EvaluationListener listener) {
+        this(System::nanoTime, listener);
+    }
+
+    RequestAccessStrategyScheduler(final LongSupplier ticker) {
+        this(ticker, (strategy, elapsedNanos, matched) -> {
+        });
+    }
+
+    RequestAccessStrategyScheduler(final LongSupplier ticker, final EvaluationListener listener) {
+        this.ticker = ticker;
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the set of strategies to schedule. Statistics of strategies that are still registered are kept.
+     */
+    synchronized void setStrategies(final Collection<RequestAccessUserStrategy> registered) {
+        final Map<RequestAccessUserStrategy, StrategyStats> currentStats = schedule.get().stats;
+        final Map<RequestAccessUserStrategy, StrategyStats> newStats = new IdentityHashMap<>();
+        int registrationIndex = 0;
+        for (final RequestAccessUserStrategy strategy : registered) {
+            final StrategyStats existing = currentStats.get(strategy);
+            newStats.put(strategy, new StrategyStats(registrationIndex++, existing));
+        }
+        schedule.set(new Schedule(unmodifiableMap(newStats)));
+    }
+
+    /**
+     * Tries the strategies accepted by the filter in the current evaluation order and returns on the first match.
+     */
+    boolean anyMatch(final Predicate<RequestAccessUserStrategy> filter,
+                     final Predicate<RequestAccessUserStrategy> matcher) {
+        final Schedule currentSchedule = schedule.get();
+        boolean matched = false;
+        for (final RequestAccessUserStrategy strategy : currentSchedule.evaluationOrder) {
+            if (!filter.test(strategy)) {
+                continue;
+            }
+
+            final long start = ticker.getAsLong();
+            matched = matcher.test(strategy);
+            final long elapsedNanos = ticker.getAsLong() - start;
+            final StrategyStats strategyStats = currentSchedule.stats.get(strategy);
+            if (strategyStats != null) {
+                strategyStats.record(elapsedNanos, matched);
+            }
+            listener.evaluated(strategy, elapsedNanos, matched);
+            if (matched) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Counts a completed access check and re-sorts the evaluation order every {@link #REORDER_INTERVAL} checks
+     */
+    void countEvaluation() {
+        final long evaluations = evaluationsSinceReorder.incrementAndGet();
+        // only the thread that resets the counter re-sorts, concurrent checks carry on with the current order
+        if (evaluations >= REORDER_INTERVAL && evaluationsSinceReorder.compareAndSet(evaluations, 0)) {
+            reorder();
+        }
+    }
+
+    List<RequestAccessUserStrategy> getEvaluationOrder() {
+        return schedule.get().evaluationOrder;
+    }
+
+    /**
+     * Synchronized with {@link #setStrategies}, so the decayed averages are only ever folded by one thread at a time
+     */
+    synchronized void reorder() {
+        final Schedule current = schedule.get();
+        current.stats.values().forEach(StrategyStats::decay);
+        schedule.set(new Schedule(current.stats));
+    }
+
+    private static List<RequestAccessUserStrategy> sort(final Map<RequestAccessUserStrategy, StrategyStats> stats) {
+        final List<RequestAccessUserStrategy> sorted = new ArrayList<>(stats.keySet());
+        sorted.sort(Comparator
+            .comparingDouble((RequestAccessUserStrategy strategy) -> stats.get(strategy).expectedCostPerHit())
+            .thenComparingInt(strategy -> stats.get(strategy).registrationIndex));
+        return unmodifiableList(sorted);
+    }
+
+    /**
+     * Receives the latency and outcome of every strategy evaluation, e.g. to publish them as metrics
+     */
+    interface EvaluationListener {
+        void evaluated(RequestAccessUserStrategy strategy, long elapsedNanos, boolean matched);
+    }
+
+    private static final class Schedule {
+        private static final Schedule EMPTY = new Schedule(unmodifiableMap(new IdentityHashMap<>()));
+
+        private final Map<RequestAccessUserStrategy, StrategyStats> stats;
+        private final List<RequestAccessUserStrategy> evaluationOrder;
+
+        private Schedule(final Map<RequestAccessUserStrategy, StrategyStats> stats) {
+            this.stats = stats;
+            this.evaluationOrder = sort(stats);
+        }
+    }
+
+    private static final class StrategyStats {
+        private final int registrationIndex;
+        // samples since the last re-sort
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        // decayed samples of the previous intervals, only accessed under the lock of the scheduler
+        private double decayedInvocations;
+        private double decayedHits;
+        private double decayedNanos;
+
+        private StrategyStats(final int registrationIndex, final StrategyStats previous) {
+            this.registrationIndex = registrationIndex;
+            if (previous != null) {
+                invocations.add(previous.invocations.sum());
+                hits.add(previous.hits.sum());
+                nanos.add(previous.nanos.sum());
+                decayedInvocations = previous.decayedInvocations;
+                decayedHits = previous.decayedHits;
+                decayedNanos = previous.decayedNanos;
+            }
+        }
+
+        private void record(final long elapsedNanos, final boolean hit) {
+            invocations.increment();
+            nanos.add(elapsedNanos);
+            if (hit) {
+                hits.increment();
+            }
+        }
+
+        /**
+         * Folds the samples of the interval into the decayed averages. Samples recorded concurrently may be lost, which
+         * only makes the next re-sort slightly less informed
+         */
+        private void decay() {
+            decayedInvocations = decayedInvocations * DECAY + invocations.sumThenReset();
+            decayedHits = decayedHits * DECAY + hits.sumThenReset();
+            decayedNanos = decayedNanos * DECAY + nanos.sumThenReset();
+        }
+
+        /**
+         * Strategies without samples score 0, so they keep their registration order until we know better. A strategy
+         * that never matched is treated as if the next invocation would match, to keep its score finite.
+         */
+        private double expectedCostPerHit() {
+            if (decayedInvocations == 0) {
+                return 0;
+            }
+            final double averageNanos = decayedNanos / decayedInvocations;
+            final double hitRate = Math.max(decayedHits, 1) / (decayedInvocations + 1);
+            return averageNanos / hitRate;
+        }
+    }
+}
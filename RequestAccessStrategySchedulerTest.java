@@ -0,0 +1,117 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RequestAccessStrategySchedulerTest {
+
+    @Mock
+    private RequestAccessUserStrategy slowStrategy;
+    @Mock
+    private RequestAccessUserStrategy fastStrategy;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private RequestAccessStrategyScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new RequestAccessStrategyScheduler(clock::get);
+        scheduler.setStrategies(ImmutableList.of(slowStrategy, fastStrategy));
+    }
+
+    @Test
+    public void strategies_without_samples_keep_registration_order() {
+        assertThat(scheduler.getEvaluationOrder(), contains(slowStrategy, fastStrategy));
+    }
+
+    @Test
+    public void cheap_matching_strategy_is_moved_first() {
+        for (int i = 0; i < RequestAccessStrategyScheduler.REORDER_INTERVAL; i++) {
+            scheduler.anyMatch(strategy -> true, strategy -> {
+                clock.addAndGet(strategy == slowStrategy ? 100_000 : 1_000);
+                return strategy == fastStrategy;
+            });
+            scheduler.countEvaluation();
+        }
+
+        assertThat(scheduler.getEvaluationOrder(), contains(fastStrategy, slowStrategy));
+    }
+
+    @Test
+    public void filtered_strategies_are_not_evaluated() {
+        final boolean matched = scheduler.anyMatch(strategy -> strategy == slowStrategy, strategy -> strategy == fastStrategy);
+
+        assertThat(matched, is(false));
+    }
+
+    @Test
+    public void order_is_kept_until_the_interval_is_complete() {
+        for (int i = 0; i < RequestAccessStrategyScheduler.REORDER_INTERVAL - 1; i++) {
+            // several passes of the same access check only count once
+            scheduler.anyMatch(strategy -> strategy == slowStrategy, strategy -> {
+                clock.addAndGet(100_000);
+                return false;
+            });
+            scheduler.anyMatch(strategy -> strategy == fastStrategy, strategy -> {
+                clock.addAndGet(1_000);
+                return true;
+            });
+            scheduler.countEvaluation();
+        }
+
+        assertThat(scheduler.getEvaluationOrder(), contains(slowStrategy, fastStrategy));
+
+        scheduler.countEvaluation();
+
+        assertThat(scheduler.getEvaluationOrder(), contains(fastStrategy, slowStrategy));
+    }
+
+    @Test
+    public void statistics_survive_re_registration() {
+        for (int i = 0; i < RequestAccessStrategyScheduler.REORDER_INTERVAL; i++) {
+            scheduler.anyMatch(strategy -> true, strategy -> {
+                clock.addAndGet(strategy == slowStrategy ? 100_000 : 1_000);
+                return strategy == fastStrategy;
+            });
+            scheduler.countEvaluation();
+        }
+
+        scheduler.setStrategies(ImmutableList.of(slowStrategy, fastStrategy));
+
+        assertThat(scheduler.getEvaluationOrder(), contains(fastStrategy, slowStrategy));
+    }
+
+    @Test
+    public void order_follows_a_change_in_cost() {
+        for (int i = 0; i < 20 * RequestAccessStrategyScheduler.REORDER_INTERVAL; i++) {
+            scheduler.anyMatch(strategy -> true, strategy -> {
+                clock.addAndGet(strategy == slowStrategy ? 100_000 : 1_000);
+                return strategy == fastStrategy;
+            });
+            scheduler.countEvaluation();
+        }
+
+        // the formerly fast strategy stops matching and becomes expensive, the other one the opposite
+        for (int i = 0; i < RequestAccessStrategyScheduler.REORDER_INTERVAL; i++) {
+            scheduler.anyMatch(strategy -> true, strategy -> {
+                clock.addAndGet(strategy == slowStrategy ? 1_000 : 200_000);
+                return strategy == slowStrategy;
+            });
+            scheduler.countEvaluation();
+        }
+
+        assertThat(scheduler.getEvaluationOrder(), contains(slowStrategy, fastStrategy));
+    }
+}
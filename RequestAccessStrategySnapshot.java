@@ -0,0 +1,105 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * An immutable, versioned snapshot of the registered request access strategies, in registration order.
+ * <p>
+ * Registering or unregistering a strategy creates a new snapshot (copy on write), so readers can iterate a snapshot
+ * from any thread without locking while plugins register strategies at runtime. The strategies of each
+ * {@link CustomerInvolvedType} are precomputed, combinations of types are computed once per snapshot and then reused.
+ */
+final class RequestAccessStrategySnapshot {
+
+    static final RequestAccessStrategySnapshot EMPTY = new RequestAccessStrategySnapshot(0, new RequestAccessUserStrategy[0]);
+
+    private static final CustomerInvolvedType[] TYPES = CustomerInvolvedType.values();
+
+    static {
+        // types are tracked as bits of an int mask
+        checkState(TYPES.length <= Integer.SIZE, "Too many customer involved types for a type mask");
+    }
+
+    private final long version;
+    private final RequestAccessUserStrategy[] strategies;
+    private final List<RequestAccessUserStrategy> strategyList;
+    private final ConcurrentMap<Integer, List<RequestAccessUserStrategy>> strategiesByTypeMask = new ConcurrentHashMap<>();
+
+    private RequestAccessStrategySnapshot(final long version, final RequestAccessUserStrategy[] strategies) {
+        this.version = version;
+        this.strategies = strategies;
+        this.strategyList = unmodifiableList(Arrays.asList(strategies));
+        for (final CustomerInvolvedType type : TYPES) {
+            final int mask = typeMask(type);
+            strategiesByTypeMask.put(mask, filter(mask));
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return all strategies in registration order
+     */
+    List<RequestAccessUserStrategy> getStrategies() {
+        return strategyList;
+    }
+
+    /**
+     * @return the strategies of any of the given types, in registration order
+     */
+    List<RequestAccessUserStrategy> getStrategiesForTypes(final CustomerInvolvedType... types) {
+        return strategiesByTypeMask.computeIfAbsent(typeMask(types), this::filter);
+    }
+
+    RequestAccessStrategySnapshot with(final RequestAccessUserStrategy strategy) {
+        if (strategyList.contains(strategy)) {
+            return this;
+        }
+        final RequestAccessUserStrategy[] newStrategies = Arrays.copyOf(strategies, strategies.length + 1);
+        newStrategies[strategies.length] = strategy;
+        return new RequestAccessStrategySnapshot(version + 1, newStrategies);
+    }
+
+    RequestAccessStrategySnapshot without(final RequestAccessUserStrategy strategy) {
+        if (!strategyList.contains(strategy)) {
+            return this;
+        }
+        final RequestAccessUserStrategy[] newStrategies = strategyList.stream()
+            .filter(registered -> !registered.equals(strategy))
+            .toArray(RequestAccessUserStrategy[]::new);
+        return new RequestAccessStrategySnapshot(version + 1, newStrategies);
+    }
+
+    static int typeMask(final CustomerInvolvedType... types) {
+        int mask = 0;
+        for (final CustomerInvolvedType type : types) {
+            mask |= 1 << type.ordinal();
+        }
+        return mask;
+    }
+
+    static boolean hasType(final int typeMask, final RequestAccessUserStrategy strategy) {
+        return (typeMask & (1 << strategy.getType().ordinal())) != 0;
+    }
+
+    private List<RequestAccessUserStrategy> filter(final int typeMask) {
+        final List<RequestAccessUserStrategy> filtered = new ArrayList<>(strategies.length);
+        for (final RequestAccessUserStrategy strategy : strategies) {
+            if (hasType(typeMask, strategy)) {
+                filtered.add(strategy);
+            }
+        }
+        return unmodifiableList(filtered);
+    }
+}
@@ -0,0 +1,67 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessStrategySnapshotTest {
+
+    @Mock
+    private RequestAccessUserStrategy reporterStrategy;
+    @Mock
+    private RequestAccessUserStrategy participantStrategy;
+    @Mock
+    private RequestAccessUserStrategy outsiderStrategy;
+
+    @Before
+    public void setUp() {
+        when(reporterStrategy.getType()).thenReturn(CustomerInvolvedType.REPORTER);
+        when(participantStrategy.getType()).thenReturn(CustomerInvolvedType.REQUEST_PARTICIPANT);
+        when(outsiderStrategy.getType()).thenReturn(CustomerInvolvedType.CUSTOMER_OUTSIDER);
+    }
+
+    @Test
+    public void registration_creates_a_new_version_and_keeps_registration_order() {
+        final RequestAccessStrategySnapshot snapshot = RequestAccessStrategySnapshot.EMPTY
+            .with(reporterStrategy)
+            .with(participantStrategy)
+            .with(outsiderStrategy);
+
+        assertThat(snapshot.getVersion(), is(3L));
+        assertThat(snapshot.getStrategies(), contains(reporterStrategy, participantStrategy, outsiderStrategy));
+        assertThat(RequestAccessStrategySnapshot.EMPTY.getStrategies(), is(empty()));
+    }
+
+    @Test
+    public void registering_twice_or_unregistering_unknown_strategy_keeps_the_snapshot() {
+        final RequestAccessStrategySnapshot snapshot = RequestAccessStrategySnapshot.EMPTY.with(reporterStrategy);
+
+        assertThat(snapshot.with(reporterStrategy), sameInstance(snapshot));
+        assertThat(snapshot.without(participantStrategy), sameInstance(snapshot));
+    }
+
+    @Test
+    public void strategies_for_types_are_filtered_in_registration_order() {
+        final RequestAccessStrategySnapshot snapshot = RequestAccessStrategySnapshot.EMPTY
+            .with(reporterStrategy)
+            .with(participantStrategy)
+            .with(outsiderStrategy)
+            .without(participantStrategy);
+
+        assertThat(snapshot.getStrategiesForTypes(CustomerInvolvedType.REQUEST_PARTICIPANT), is(empty()));
+        assertThat(snapshot.getStrategiesForTypes(CustomerInvolvedType.CUSTOMER_OUTSIDER, CustomerInvolvedType.REPORTER),
+            contains(reporterStrategy, outsiderStrategy));
+    }
+}
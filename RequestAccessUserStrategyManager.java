@@ -4,7 +4,11 @@ import com.atlassian.jira.issue.Issue;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface RequestAccessUserStrategyManager {
 
@@ -17,11 +21,66 @@ public interface RequestAccessUserStrategyManager {
      */
     List<CheckedUser> getMembers(Issue issue);
 
+    /**
+     * Get the members of many requests at once, e.g. for notification fan-out. The result is the same as calling
+     * {@link #getMembers(Issue)} per issue, but every organisation and customer group shared on several of the requests
+     * is only expanded once per batch.
+     *
+     * @return the members keyed by issue, in the iteration order of the given issues
+     */
+    Map<Issue, List<CheckedUser>> getMembers(Collection<Issue> issues);
+
     /**
      * Get a list of users of the given types who involve to a request as a customer in the portal
      */
     List<CheckedUser> getMembersForTypes(Issue issue, CustomerInvolvedType... types);
 
+    /**
+     * Get the members of a request together with the types they are involved as, i.e. the strategies that returned
+     * them. Every member matches at least one of its types, so callers that filter the members afterwards don't need
+     * to {@link #match} them again.
+     *
+     * @return the types of each member, keyed in the same order as {@link #getMembers(Issue)}
+     */
+    Map<CheckedUser, Set<CustomerInvolvedType>> getMemberTypes(Issue issue);
+
+    /**
+     * Get the members of the given types together with the types they are involved as, see
+     * {@link #getMemberTypes(Issue)}
+     */
+    Map<CheckedUser, Set<CustomerInvolvedType>> getMemberTypesForTypes(Issue issue, CustomerInvolvedType... types);
+
+    /**
+     * Lazily iterate the distinct members of a request, in the same order as {@link #getMembers(Issue)}.
+     * <p>
+     * Strategies are only expanded once the users of the previous strategies have been consumed, so use this when
+     * you only need the first few users or want to know whether there are any members at all. A strategy that is
+     * reached is still expanded in full, e.g. every member of an organisation shared on the request.
+     *
+     * @param limit the maximum number of users to return
+     */
+    Iterator<CheckedUser> iterateMembers(Issue issue, int limit);
+
+    /**
+     * Lazily iterate all distinct members of a request, see {@link #iterateMembers(Issue, int)}
+     */
+    Iterator<CheckedUser> iterateMembers(Issue issue);
+
+    /**
+     * Lazily iterate the distinct members of the given types, see {@link #iterateMembers(Issue, int)}
+     *
+     * @param limit the maximum number of users to return
+     */
+    Iterator<CheckedUser> iterateMembersForTypes(Issue issue, int limit, CustomerInvolvedType... types);
+
+    /**
+     * Lazily iterate the members of a request strategy by strategy, in the order of {@link #getMembers(Issue)}. A
+     * strategy is only expanded when its members are asked for. Each list holds the users of one strategy whose keys
+     * were not returned by an earlier strategy, sorted by user key, so a position within the members of a strategy can
+     * be remembered by the last user key.
+     */
+    Iterator<List<CheckedUser>> iterateMembersByStrategy(Issue issue);
+
     /**
      * Check whether a user's type matches the strategy type in context of given issue, i.e.
      * reporter, request participant or approver.
@@ -36,4 +95,21 @@ public interface RequestAccessUserStrategyManager {
      * This does not check access to the project the issue belongs to.
      */
     boolean match(ApplicationUser user, Issue issue, CustomerInvolvedType... types);
+
+    /**
+     * Get all types the user matches in context of given issue, evaluating each strategy once.
+     * <p>
+     * This does not check access to the project the issue belongs to.
+     */
+    Set<CustomerInvolvedType> getMatchingTypes(ApplicationUser user, Issue issue);
+
+    /**
+     * Check which of the given issues the user matches any strategy type for. Strategies that support it answer for
+     * all issues with a single batched lookup.
+     * <p>
+     * This does not check access to the projects the issues belong to.
+     *
+     * @return the ids of the issues the user matches
+     */
+    Set<Long> match(ApplicationUser user, Collection<Issue> issues);
 }
@@ -7,17 +7,30 @@ import com.atlassian.servicedesk.api.user.CheckedUser;
 import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
 import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserProviderRegistry;
 import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
-import java.util.Arrays;
+import com.google.common.collect.AbstractIterator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import static com.atlassian.servicedesk.internal.permission.security.RequestMembersIterator.NO_LIMIT;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableList;
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Comparator.comparing;
+import static java.util.function.Function.identity;
 
 @Component
 @ExportAsService
@@ -26,18 +39,36 @@ class RequestAccessUserStrategyManagerImpl implements RequestAccessUserStrategyM
     /**
      * Holds all registered strategies
      * <p>
-     * Note: We are using a linked hash set here to ensure that our registered strategies are executed first.
+     * Note: The snapshot keeps the registration order to ensure that our registered strategies are executed first
+     * when collecting members. {@link #match} uses the {@link RequestAccessStrategyScheduler} order instead.
      */
-    private final LinkedHashSet<RequestAccessUserStrategy> strategies = new LinkedHashSet<>();
+    private volatile RequestAccessStrategySnapshot strategies = RequestAccessStrategySnapshot.EMPTY;
+
+    /**
+     * Orders the strategies for {@link #match} by their observed cost and hit rate, and records their match metrics
+     */
+    private final RequestAccessStrategyScheduler scheduler;
+
+    private final RequestAccessDecisionCache decisionCache;
+    private final RequestAccessExpansionExecutor expansionExecutor;
+    private final RequestAccessMetrics metrics;
 
     @Autowired
     public RequestAccessUserStrategyManagerImpl(
+        final RequestAccessDecisionCache decisionCache,
+        final RequestAccessExpansionExecutor expansionExecutor,
+        final RequestAccessMetrics metrics,
         final ReporterRequestAccessUserStrategy reporterRequestAccessUserStrategy,
         final RequestParticipantRequestAccessUserStrategy requestParticipantRequestAccessUserStrategy,
         final CustomerOrganisationParticipantRequestAccessUserStrategy customerOrganisationParticipantRequestAccessUserStrategy,
         final CustomerGroupParticipantRequestAccessUserStrategy customerGroupParticipantRequestAccessUserStrategy,
         final CustomerOutsiderRequestAccessUserStrategy customerOutsiderRequestAccessUserStrategy
     ) {
+        this.decisionCache = decisionCache;
+        this.expansionExecutor = expansionExecutor;
+        this.metrics = metrics;
+        this.scheduler = new RequestAccessStrategyScheduler(metrics::recordMatch);
+
         // register reporter strategy
         register(reporterRequestAccessUserStrategy);
 
@@ -58,48 +89,271 @@ class RequestAccessUserStrategyManagerImpl implements RequestAccessUserStrategyM
 
     @Override
     public List<CheckedUser> getMembers(final Issue issue) {
-        return getMembersFromStrategyStream(issue, strategies.stream());
+        return metrics.timeGetMembers(() -> getMembersFromStrategies(issue, strategies.getStrategies()));
+    }
+
+    @Override
+    public Map<Issue, List<CheckedUser>> getMembers(final Collection<Issue> issues) {
+        final Map<Long, Set<CheckedUser>> membersByIssueId = new HashMap<>();
+        // users shared by many requests (e.g. members of the same organisation) are kept as one instance per batch
+        final Map<CheckedUser, CheckedUser> canonicalUsers = new HashMap<>();
+        for (final RequestAccessUserStrategy strategy : strategies.getStrategies()) {
+            bulkGetUsers(strategy, issues).forEach((issueId, users) -> {
+                final Set<CheckedUser> members = membersByIssueId.computeIfAbsent(issueId, id -> new LinkedHashSet<>());
+                for (final CheckedUser user : users) {
+                    members.add(canonicalUsers.computeIfAbsent(user, identity()));
+                }
+            });
+        }
+
+        final Map<Issue, List<CheckedUser>> membersByIssue = new LinkedHashMap<>();
+        for (final Issue issue : issues) {
+            final Set<CheckedUser> members = membersByIssueId.get(issue.getId());
+            membersByIssue.put(issue, members == null ? emptyList() : unmodifiableList(new ArrayList<>(members)));
+        }
+        return unmodifiableMap(membersByIssue);
+    }
+
+    private Map<Long, List<CheckedUser>> bulkGetUsers(final RequestAccessUserStrategy strategy,
+                                                      final Collection<Issue> issues) {
+        if (strategy instanceof BulkRequestAccessUserStrategy) {
+            return metrics.timeGetUsers(strategy, () -> ((BulkRequestAccessUserStrategy) strategy).getUsers(issues));
+        }
+        return metrics.timeGetUsers(strategy, () -> BulkRequestAccessUserStrategy.getUsersEach(strategy, issues));
+    }
+
+    private List<CheckedUser> getUsers(final RequestAccessUserStrategy strategy, final Issue issue) {
+        return metrics.timeGetUsers(strategy, () -> strategy.getUsers(issue));
+    }
+
+    private boolean match(final RequestAccessUserStrategy strategy, final ApplicationUser user, final Issue issue) {
+        return metrics.timeMatch(strategy, () -> strategy.match(user, issue));
     }
 
     @Override
     public List<CheckedUser> getMembersForTypes(final Issue issue, final CustomerInvolvedType... types) {
-        return getMembersFromStrategyStream(issue, getStrategyStreamForTypes(types));
+        return metrics.timeGetMembersForTypes(types,
+            () -> getMembersFromStrategies(issue, strategies.getStrategiesForTypes(types)));
     }
 
-    private Stream<RequestAccessUserStrategy> getStrategyStreamForTypes(final CustomerInvolvedType[] types) {
-        final Set<CustomerInvolvedType> typesSet = EnumSet.copyOf(Arrays.asList(types));
-        return strategies.stream().filter(strategy -> typesSet.contains(strategy.getType()));
+    private List<CheckedUser> getMembersFromStrategies(final Issue issue,
+                                                       final List<RequestAccessUserStrategy> strategies) {
+        if (expansionExecutor.isEnabled() && strategies.size() > 1) {
+            return unmodifiableList(new ArrayList<>(expansionExecutor.expand(strategies, strategy -> getUsers(strategy, issue))));
+        }
+        return unmodifiableList(newArrayList(iterate(issue, strategies, NO_LIMIT)));
     }
 
-    private List<CheckedUser> getMembersFromStrategyStream(final Issue issue,
-                                                           final Stream<RequestAccessUserStrategy> strategies) {
-        final List<CheckedUser> members = strategies
-            .flatMap(strategy -> strategy.getUsers(issue).stream())
-            .distinct()
-            .collect(toList());
-        return unmodifiableList(members);
+    @Override
+    public Map<CheckedUser, Set<CustomerInvolvedType>> getMemberTypes(final Issue issue) {
+        return getMemberTypesFromStrategies(issue, strategies.getStrategies());
+    }
+
+    @Override
+    public Map<CheckedUser, Set<CustomerInvolvedType>> getMemberTypesForTypes(final Issue issue,
+                                                                            final CustomerInvolvedType... types) {
+        return getMemberTypesFromStrategies(issue, strategies.getStrategiesForTypes(types));
+    }
+
+    private Map<CheckedUser, Set<CustomerInvolvedType>> getMemberTypesFromStrategies(
+        final Issue issue,
+        final List<RequestAccessUserStrategy> strategies
+    ) {
+        final List<List<CheckedUser>> usersOfStrategies;
+        if (expansionExecutor.isEnabled() && strategies.size() > 1) {
+            usersOfStrategies = expansionExecutor.expandEach(strategies, strategy -> getUsers(strategy, issue));
+        } else {
+            usersOfStrategies = new ArrayList<>(strategies.size());
+            for (final RequestAccessUserStrategy strategy : strategies) {
+                usersOfStrategies.add(getUsers(strategy, issue));
+            }
+        }
+
+        final Map<CheckedUser, Set<CustomerInvolvedType>> memberTypes = new LinkedHashMap<>();
+        for (int i = 0; i < strategies.size(); i++) {
+            final CustomerInvolvedType type = strategies.get(i).getType();
+            for (final CheckedUser user : usersOfStrategies.get(i)) {
+                memberTypes.computeIfAbsent(user, u -> EnumSet.noneOf(CustomerInvolvedType.class)).add(type);
+            }
+        }
+        return unmodifiableMap(memberTypes);
+    }
+
+    @Override
+    public Iterator<CheckedUser> iterateMembers(final Issue issue, final int limit) {
+        checkArgument(limit >= 0, "limit must not be negative");
+        return iterate(issue, strategies.getStrategies(), limit);
+    }
+
+    @Override
+    public Iterator<CheckedUser> iterateMembers(final Issue issue) {
+        return iterate(issue, strategies.getStrategies(), NO_LIMIT);
+    }
+
+    @Override
+    public Iterator<CheckedUser> iterateMembersForTypes(final Issue issue,
+                                                        final int limit,
+                                                        final CustomerInvolvedType... types) {
+        checkArgument(limit >= 0, "limit must not be negative");
+        return iterate(issue, strategies.getStrategiesForTypes(types), limit);
+    }
+
+    private Iterator<CheckedUser> iterate(final Issue issue,
+                                          final List<RequestAccessUserStrategy> strategies,
+                                          final int limit) {
+        return new RequestMembersIterator(strategy -> getUsers(strategy, issue), strategies.iterator(), limit);
+    }
+
+    @Override
+    public Iterator<List<CheckedUser>> iterateMembersByStrategy(final Issue issue) {
+        final Iterator<RequestAccessUserStrategy> orderedStrategies = strategies.getStrategies().iterator();
+        // the keys of every user returned so far, so each strategy is expanded once and deduplicated against them
+        final Set<String> expandedUserKeys = new HashSet<>();
+        return new AbstractIterator<List<CheckedUser>>() {
+            @Override
+            protected List<CheckedUser> computeNext() {
+                if (!orderedStrategies.hasNext()) {
+                    return endOfData();
+                }
+
+                final List<CheckedUser> members = new ArrayList<>();
+                for (final CheckedUser user : getUsers(orderedStrategies.next(), issue)) {
+                    if (expandedUserKeys.add(userKey(user))) {
+                        members.add(user);
+                    }
+                }
+                members.sort(comparing(RequestAccessUserStrategyManagerImpl::userKey));
+                return unmodifiableList(members);
+            }
+        };
+    }
+
+    static String userKey(final CheckedUser user) {
+        return user.forJIRA().getKey();
     }
 
     @Override
     public boolean match(final ApplicationUser user, final Issue issue) {
-        // the user must matches at least one strategy type
-        return strategies.stream().anyMatch(strategy -> strategy.match(user, issue));
+        // the user must matches at least one strategy type. Persistent strategies are answered from the decision cache,
+        // every other strategy is always evaluated as its state may live on the current thread only. The scheduler
+        // records the match metrics of both passes
+        final boolean matched = decisionCache.get(user, issue, () -> scheduler.anyMatch(
+            RequestAccessUserStrategyManagerImpl::isCacheable,
+            strategy -> strategy.match(user, issue)))
+            || scheduler.anyMatch(
+            strategy -> !isCacheable(strategy),
+            strategy -> strategy.match(user, issue));
+        scheduler.countEvaluation();
+        return matched;
     }
 
     @Override
     public boolean match(final ApplicationUser user, final Issue issue, final CustomerInvolvedType... type) {
-        return getStrategyStreamForTypes(type).anyMatch(strategy -> strategy.match(user, issue));
+        final int typeMask = RequestAccessStrategySnapshot.typeMask(type);
+        final boolean matched = scheduler.anyMatch(
+            strategy -> RequestAccessStrategySnapshot.hasType(typeMask, strategy),
+            strategy -> strategy.match(user, issue));
+        scheduler.countEvaluation();
+        return matched;
+    }
+
+    @Override
+    public Set<CustomerInvolvedType> getMatchingTypes(final ApplicationUser user, final Issue issue) {
+        final Set<CustomerInvolvedType> matchingTypes = EnumSet.noneOf(CustomerInvolvedType.class);
+        for (final RequestAccessUserStrategy strategy : strategies.getStrategies()) {
+            // another strategy of the same type has already matched
+            if (!matchingTypes.contains(strategy.getType()) && match(strategy, user, issue)) {
+                matchingTypes.add(strategy.getType());
+            }
+        }
+        return matchingTypes;
+    }
+
+    @Override
+    public Set<Long> match(final ApplicationUser user, final Collection<Issue> issues) {
+        final Set<Long> matchingIssueIds = new HashSet<>();
+        final List<Issue> uncached = new ArrayList<>();
+        for (final Issue issue : issues) {
+            if (decisionCache.isKnownMatch(user, issue)) {
+                matchingIssueIds.add(issue.getId());
+            } else {
+                uncached.add(issue);
+            }
+        }
+
+        // the same decisions as match(user, issue): only positive decisions of cacheable strategies are remembered
+        final Set<Long> cacheableMatches = bulkMatch(user, uncached, RequestAccessUserStrategyManagerImpl::isCacheable);
+        for (final Issue issue : uncached) {
+            if (cacheableMatches.contains(issue.getId())) {
+                decisionCache.putMatch(user, issue);
+            }
+        }
+        matchingIssueIds.addAll(cacheableMatches);
+
+        final List<Issue> remaining = new ArrayList<>(issues);
+        remaining.removeIf(issue -> matchingIssueIds.contains(issue.getId()));
+        matchingIssueIds.addAll(bulkMatch(user, remaining, strategy -> !isCacheable(strategy)));
+        return matchingIssueIds;
+    }
+
+    private Set<Long> bulkMatch(final ApplicationUser user,
+                                final Collection<Issue> issues,
+                                final Predicate<RequestAccessUserStrategy> filter) {
+        final Set<Long> matchingIssueIds = new HashSet<>();
+        final List<Issue> remaining = new ArrayList<>(issues);
+        for (final RequestAccessUserStrategy strategy : scheduler.getEvaluationOrder()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            if (!filter.test(strategy)) {
+                continue;
+            }
+
+            final Set<Long> matched = new HashSet<>();
+            // a batch is recorded as a single invocation, which is a hit if any issue matched
+            metrics.timeMatch(strategy, () -> matched.addAll(strategy instanceof BulkRequestAccessUserStrategy
+                ? ((BulkRequestAccessUserStrategy) strategy).match(user, remaining)
+                : BulkRequestAccessUserStrategy.matchEach(strategy, user, remaining)));
+            matchingIssueIds.addAll(matched);
+            // issues already matched by a strategy don't need to be asked again
+            remaining.removeIf(issue -> matched.contains(issue.getId()));
+        }
+        return matchingIssueIds;
+    }
+
+    /**
+     * Only our own strategies that read persistent state may be computed on another thread. The customer outsider and
+     * strategies registered by other plugins may depend on state of the current request, so they are treated as
+     * request scoped.
+     */
+    static boolean isPersistent(final RequestAccessUserStrategy strategy) {
+        return strategy instanceof ReporterRequestAccessUserStrategy
+            || strategy instanceof RequestParticipantRequestAccessUserStrategy
+            || strategy instanceof CustomerOrganisationParticipantRequestAccessUserStrategy
+            || strategy instanceof CustomerGroupParticipantRequestAccessUserStrategy;
+    }
+
+    /**
+     * Only persistent strategies whose changes either update the issue or are evented may have their decisions cached.
+     * Organisation membership changes are not evented, so the organisation strategy is always evaluated.
+     */
+    static boolean isCacheable(final RequestAccessUserStrategy strategy) {
+        return isPersistent(strategy) && !(strategy instanceof CustomerOrganisationParticipantRequestAccessUserStrategy);
     }
 
     // SPI
 
     @Override
-    public void register(final RequestAccessUserStrategy strategy) {
-        strategies.add(strategy);
+    public synchronized void register(final RequestAccessUserStrategy strategy) {
+        strategies = strategies.with(strategy);
+        scheduler.setStrategies(strategies.getStrategies());
+        decisionCache.invalidateAll();
     }
 
     @Override
-    public void unregister(final RequestAccessUserStrategy strategy) {
-        strategies.remove(strategy);
+    public synchronized void unregister(final RequestAccessUserStrategy strategy) {
+        strategies = strategies.without(strategy);
+        scheduler.setStrategies(strategies.getStrategies());
+        decisionCache.invalidateAll();
     }
 }
@@ -0,0 +1,191 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestAccessUserStrategyManagerImplTest {
+
+    @Mock
+    private EventPublisher eventPublisher;
+    @Mock
+    private RequestAccessExpansionExecutor expansionExecutor;
+    @Mock
+    private ReporterRequestAccessUserStrategy reporterStrategy;
+    @Mock
+    private RequestParticipantRequestAccessUserStrategy participantStrategy;
+    @Mock
+    private CustomerOrganisationParticipantRequestAccessUserStrategy organisationStrategy;
+    @Mock
+    private CustomerGroupParticipantRequestAccessUserStrategy groupStrategy;
+    @Mock
+    private CustomerOutsiderRequestAccessUserStrategy outsiderStrategy;
+    @Mock
+    private ApplicationUser user;
+    @Mock
+    private Issue sharedIssue;
+    @Mock
+    private Issue otherIssue;
+
+    private RequestAccessUserStrategyManagerImpl manager;
+
+    @Before
+    public void setUp() {
+        when(reporterStrategy.getType()).thenReturn(CustomerInvolvedType.REPORTER);
+        when(participantStrategy.getType()).thenReturn(CustomerInvolvedType.REQUEST_PARTICIPANT);
+        when(organisationStrategy.getType()).thenReturn(CustomerInvolvedType.CUSTOMER_ORGANISATION);
+        when(groupStrategy.getType()).thenReturn(CustomerInvolvedType.CUSTOMER_GROUP);
+        when(outsiderStrategy.getType()).thenReturn(CustomerInvolvedType.CUSTOMER_OUTSIDER);
+
+        when(user.getKey()).thenReturn("customer");
+        issue(sharedIssue, 1L);
+        issue(otherIssue, 2L);
+        when(groupStrategy.match(eq(user), anyCollection())).thenAnswer(invocation -> {
+            final Collection<Issue> issues = invocation.getArgument(1);
+            return issues.contains(sharedIssue) ? ImmutableSet.of(1L) : ImmutableSet.of();
+        });
+        when(groupStrategy.match(user, sharedIssue)).thenReturn(true);
+
+        manager = new RequestAccessUserStrategyManagerImpl(
+            new RequestAccessDecisionCache(new MemoryCacheManager(), eventPublisher, new RequestAccessMetrics()),
+            expansionExecutor,
+            new RequestAccessMetrics(),
+            reporterStrategy,
+            participantStrategy,
+            organisationStrategy,
+            groupStrategy,
+            outsiderStrategy);
+    }
+
+    @Test
+    public void bulk_match_asks_a_bulk_strategy_once_for_all_issues() {
+        assertThat(manager.match(user, ImmutableList.of(sharedIssue, otherIssue)), containsInAnyOrder(1L));
+
+        verify(groupStrategy, times(1)).match(eq(user), anyCollection());
+        verify(groupStrategy, never()).match(any(ApplicationUser.class), any(Issue.class));
+        // strategies that can't batch are asked issue by issue
+        verify(participantStrategy).match(user, sharedIssue);
+        verify(participantStrategy).match(user, otherIssue);
+    }
+
+    @Test
+    public void bulk_match_stores_positive_decisions_for_single_matches() {
+        manager.match(user, ImmutableList.of(sharedIssue, otherIssue));
+
+        assertThat(manager.match(user, sharedIssue), is(true));
+        assertThat(manager.match(user, otherIssue), is(false));
+
+        verify(groupStrategy, never()).match(user, sharedIssue);
+        // negative decisions are never cached
+        verify(groupStrategy).match(user, otherIssue);
+    }
+
+    @Test
+    public void bulk_match_answers_from_cached_decisions() {
+        manager.match(user, sharedIssue);
+
+        manager.match(user, ImmutableList.of(sharedIssue, otherIssue));
+
+        verify(groupStrategy).match(user, ImmutableList.of(otherIssue));
+    }
+
+    @Test
+    public void request_scoped_strategies_are_never_cached() {
+        when(outsiderStrategy.match(eq(user), anyCollection())).thenReturn(ImmutableSet.of(2L));
+
+        assertThat(manager.match(user, ImmutableList.of(otherIssue)), containsInAnyOrder(2L));
+
+        when(outsiderStrategy.match(eq(user), anyCollection())).thenReturn(ImmutableSet.of());
+        assertThat(manager.match(user, ImmutableList.of(otherIssue)), is(empty()));
+    }
+
+    @Test
+    public void organisation_decisions_are_never_cached() {
+        when(organisationStrategy.match(user, otherIssue)).thenReturn(true);
+        assertThat(manager.match(user, otherIssue), is(true));
+
+        when(organisationStrategy.match(user, otherIssue)).thenReturn(false);
+        assertThat(manager.match(user, otherIssue), is(false));
+    }
+
+    @Test
+    public void bulk_get_members_merges_the_users_of_all_strategies_per_issue() {
+        final CheckedUser reporter = checkedUser(user);
+        final CheckedUser organisationMember = checkedUser(mock(ApplicationUser.class));
+        when(reporterStrategy.getUsers(sharedIssue)).thenReturn(ImmutableList.of(reporter));
+        when(reporterStrategy.getUsers(otherIssue)).thenReturn(ImmutableList.of(reporter));
+        when(organisationStrategy.getUsers(anyCollection())).thenReturn(ImmutableMap.of(
+            1L, ImmutableList.of(organisationMember, reporter),
+            2L, ImmutableList.of()));
+
+        final Map<Issue, List<CheckedUser>> members = manager.getMembers(ImmutableList.of(sharedIssue, otherIssue));
+
+        assertThat(members.get(sharedIssue), contains(reporter, organisationMember));
+        assertThat(members.get(otherIssue), contains(reporter));
+        // a bulk strategy is asked once for the whole batch
+        verify(organisationStrategy, times(1)).getUsers(anyCollection());
+        verify(organisationStrategy, never()).getUsers(any(Issue.class));
+    }
+
+    @Test
+    public void members_by_strategy_are_ordered_by_key_and_skip_users_of_earlier_strategies() {
+        final ApplicationUser groupMemberUser = mock(ApplicationUser.class);
+        when(groupMemberUser.getKey()).thenReturn("a-group-member");
+        final CheckedUser reporter = checkedUser(user);
+        final CheckedUser groupMember = checkedUser(groupMemberUser);
+        when(reporterStrategy.getUsers(sharedIssue)).thenReturn(ImmutableList.of(reporter));
+        when(groupStrategy.getUsers(sharedIssue)).thenReturn(ImmutableList.of(reporter, groupMember));
+
+        final Iterator<List<CheckedUser>> membersByStrategy = manager.iterateMembersByStrategy(sharedIssue);
+
+        verify(reporterStrategy, never()).getUsers(any(Issue.class));
+
+        // reporter, participant, group, organisation, outsider
+        assertThat(membersByStrategy.next(), contains(reporter));
+        assertThat(membersByStrategy.next(), is(empty()));
+        verify(groupStrategy, never()).getUsers(any(Issue.class));
+        assertThat(membersByStrategy.next(), contains(groupMember));
+    }
+
+    private static CheckedUser checkedUser(final ApplicationUser applicationUser) {
+        final CheckedUser checkedUser = mock(CheckedUser.class);
+        when(checkedUser.forJIRA()).thenReturn(applicationUser);
+        return checkedUser;
+    }
+
+    private static void issue(final Issue issue, final long id) {
+        when(issue.getId()).thenReturn(id);
+        when(issue.getUpdated()).thenReturn(new Timestamp(1000L));
+    }
+}
@@ -0,0 +1,223 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext.OutsideCustomerIssuePermissionContext;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Shares the permission checked members of a request between the consumers of one issue event, e.g. notifications,
+ * automation, webhooks and SLAs, so they are resolved once per event instead of once per consumer.
+ * <p>
+ * The dispatcher of the event hands it to the consumers within a scope for the issue, see
+ * {@link ExtendedCustomerInvolvedService#withSharedMembers} and
+ * {@link ExtendedCustomerInvolvedService#withSharedMembersAsync} for consumers that complete on other threads. Open
+ * scopes are visible to every thread, so consumers running on an event or executor thread share the members as long as
+ * the scope is open. Members are keyed by issue id and updated timestamp, so an update of the issue during the event
+ * is never answered with the members of the previous version, and by the context they were resolved in: the logged in
+ * user, the customer context and the outside customers of the request.
+ */
+@Component
+public class RequestMembersEventMemo {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestMembersEventMemo.class);
+
+    /**
+     * Guards against dispatchers that don't close their scopes
+     */
+    static final int MAX_OPEN_SCOPES = 1000;
+
+    private static final Scope NO_SCOPE = () -> {
+    };
+
+    private final JiraAuthenticationContext jiraAuthenticationContext;
+    private final CustomerContextService customerContextService;
+    private final ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+
+    private final ConcurrentMap<IssueVersionKey, OpenScope> openScopes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RequestMembersEventMemo(final JiraAuthenticationContext jiraAuthenticationContext,
+                                   final CustomerContextService customerContextService,
+                                   final ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext) {
+        this.jiraAuthenticationContext = jiraAuthenticationContext;
+        this.customerContextService = customerContextService;
+        this.serviceDeskOutsideCustomerPermissionContext = serviceDeskOutsideCustomerPermissionContext;
+    }
+
+    /**
+     * Open a scope for the current version of the issue, the returned scope may be closed on any thread
+     */
+    Scope open(final Issue issue) {
+        final IssueVersionKey key = IssueVersionKey.of(issue);
+        if (key == null) {
+            return NO_SCOPE;
+        }
+
+        // the references are only changed while the map holds the lock of the key
+        final OpenScope scope = openScopes.compute(key, (issueVersion, openScope) -> {
+            if (openScope != null) {
+                openScope.references++;
+                return openScope;
+            }
+            return openScopes.size() >= MAX_OPEN_SCOPES ? null : new OpenScope();
+        });
+        if (scope == null) {
+            log.warn("Not memoising the members of issue {}, there are {} open scopes. Are they closed?",
+                key.getIssueId(), openScopes.size());
+            return NO_SCOPE;
+        }
+        return new ScopeHandle(key, scope);
+    }
+
+    /**
+     * Hand an issue event to its consumers within a scope for the issue
+     */
+    void dispatch(final Issue issue, final Runnable consumers) {
+        try (Scope scope = open(issue)) {
+            consumers.run();
+        }
+    }
+
+    /**
+     * Hand an issue event to its consumers within a scope for the issue, which stays open until the returned stage of
+     * the consumers completes
+     */
+    <T> CompletionStage<T> dispatchAsync(final Issue issue, final Supplier<? extends CompletionStage<T>> consumers) {
+        final Scope scope = open(issue);
+        try {
+            return consumers.get().whenComplete((result, failure) -> scope.close());
+        } catch (RuntimeException e) {
+            scope.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Memoise the members computed by the given supplier in the open scope of the issue, if any
+     *
+     * @param variant distinguishes different member lists of the same issue, e.g. the requested types
+     */
+    List<CheckedUser> get(final Issue issue, final String variant, final Supplier<List<CheckedUser>> members) {
+        final IssueVersionKey key = IssueVersionKey.of(issue);
+        final OpenScope scope = key == null ? null : openScopes.get(key);
+        if (scope == null) {
+            return members.get();
+        }
+
+        // not computeIfAbsent, resolving the members may memoise another variant of the issue. Consumers racing for
+        // the same members may both resolve them, the first one is kept
+        final MemoKey memoKey = memoKey(issue, variant);
+        final List<CheckedUser> memoised = scope.members.get(memoKey);
+        if (memoised != null) {
+            return memoised;
+        }
+        final List<CheckedUser> resolved = members.get();
+        final List<CheckedUser> raced = scope.members.putIfAbsent(memoKey, resolved);
+        return raced == null ? resolved : raced;
+    }
+
+    private MemoKey memoKey(final Issue issue, final String variant) {
+        final ApplicationUser loggedInUser = jiraAuthenticationContext.getLoggedInUser();
+        final Set<String> outsideCustomerKeys = serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext()
+            .stream()
+            .filter(context -> Objects.equals(context.getIssue(), issue))
+            .map(OutsideCustomerIssuePermissionContext::getCheckedUser)
+            .filter(Objects::nonNull)
+            .map(CheckedUser::forJIRA)
+            .filter(Objects::nonNull)
+            .map(ApplicationUser::getKey)
+            .collect(toSet());
+        return new MemoKey(variant,
+            loggedInUser == null ? null : loggedInUser.getKey(),
+            customerContextService.isInCustomerContext(),
+            outsideCustomerKeys);
+    }
+
+    private void close(final IssueVersionKey key, final OpenScope scope) {
+        openScopes.computeIfPresent(key, (issueVersion, openScope) ->
+            openScope == scope && --openScope.references == 0 ? null : openScope);
+    }
+
+    interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final class ScopeHandle implements Scope {
+        private final IssueVersionKey key;
+        private final OpenScope scope;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ScopeHandle(final IssueVersionKey key, final OpenScope scope) {
+            this.key = key;
+            this.scope = scope;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                RequestMembersEventMemo.this.close(key, scope);
+            }
+        }
+    }
+
+    private static final class OpenScope {
+        private final ConcurrentMap<MemoKey, List<CheckedUser>> members = new ConcurrentHashMap<>();
+        private int references = 1;
+    }
+
+    private static final class MemoKey {
+        private final String variant;
+        private final String loggedInUserKey;
+        private final boolean inCustomerContext;
+        private final Set<String> outsideCustomerKeys;
+
+        MemoKey(final String variant,
+                final String loggedInUserKey,
+                final boolean inCustomerContext,
+                final Set<String> outsideCustomerKeys) {
+            this.variant = variant;
+            this.loggedInUserKey = loggedInUserKey;
+            this.inCustomerContext = inCustomerContext;
+            this.outsideCustomerKeys = outsideCustomerKeys;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final MemoKey that = (MemoKey) o;
+            return inCustomerContext == that.inCustomerContext
+                && variant.equals(that.variant)
+                && Objects.equals(loggedInUserKey, that.loggedInUserKey)
+                && outsideCustomerKeys.equals(that.outsideCustomerKeys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(variant, loggedInUserKey, inCustomerContext, outsideCustomerKeys);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext.OutsideCustomerIssuePermissionContext;
+import com.google.common.collect.ImmutableList;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestMembersEventMemoTest {
+
+    @Mock
+    private JiraAuthenticationContext jiraAuthenticationContext;
+    @Mock
+    private CustomerContextService customerContextService;
+    @Mock
+    private ServiceDeskOutsideCustomerPermissionContext serviceDeskOutsideCustomerPermissionContext;
+    @Mock
+    private Issue issue;
+    @Mock
+    private CheckedUser member;
+    @Mock
+    private ApplicationUser agent;
+    @Mock
+    private ApplicationUser otherAgent;
+
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private RequestMembersEventMemo memo;
+
+    @Before
+    public void setUp() {
+        memo = new RequestMembersEventMemo(
+            jiraAuthenticationContext, customerContextService, serviceDeskOutsideCustomerPermissionContext);
+
+        when(issue.getId()).thenReturn(10000L);
+        when(issue.getUpdated()).thenReturn(new Timestamp(1000L));
+        when(agent.getKey()).thenReturn("agent");
+        when(otherAgent.getKey()).thenReturn("other-agent");
+        when(jiraAuthenticationContext.getLoggedInUser()).thenReturn(agent);
+        when(serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext()).thenReturn(ImmutableList.of());
+    }
+
+    @Test
+    public void members_are_resolved_once_within_a_dispatch() {
+        memo.dispatch(issue, () -> {
+            resolve();
+            resolve();
+        });
+
+        assertThat(resolutions.get(), is(1));
+    }
+
+    @Test
+    public void members_are_resolved_every_time_outside_of_a_scope() {
+        memo.open(issue).close();
+        resolve();
+        resolve();
+
+        assertThat(resolutions.get(), is(2));
+    }
+
+    @Test
+    public void new_issue_version_is_not_answered_from_the_scope() {
+        try (RequestMembersEventMemo.Scope scope = memo.open(issue)) {
+            resolve();
+            when(issue.getUpdated()).thenReturn(new Timestamp(2000L));
+            resolve();
+        }
+
+        assertThat(resolutions.get(), is(2));
+    }
+
+    @Test
+    public void members_resolved_in_another_context_are_not_shared() {
+        try (RequestMembersEventMemo.Scope scope = memo.open(issue)) {
+            resolve();
+            when(jiraAuthenticationContext.getLoggedInUser()).thenReturn(otherAgent);
+            resolve();
+            when(customerContextService.isInCustomerContext()).thenReturn(true);
+            resolve();
+        }
+
+        assertThat(resolutions.get(), is(3));
+    }
+
+    @Test
+    public void scopes_are_shared_with_consumers_on_other_threads() throws InterruptedException {
+        try (RequestMembersEventMemo.Scope scope = memo.open(issue)) {
+            resolve();
+            final Thread consumerThread = new Thread(this::resolve);
+            consumerThread.start();
+            consumerThread.join();
+        }
+
+        assertThat(resolutions.get(), is(1));
+    }
+
+    @Test
+    public void async_dispatch_shares_members_until_the_consumers_complete() {
+        final CompletableFuture<Void> consumers = new CompletableFuture<>();
+        memo.dispatchAsync(issue, () -> consumers);
+
+        resolve();
+        resolve();
+        consumers.complete(null);
+        resolve();
+
+        assertThat(resolutions.get(), is(2));
+    }
+
+    @Test
+    public void outside_customers_without_a_user_are_ignored() {
+        final OutsideCustomerIssuePermissionContext outsideCustomer = mock(OutsideCustomerIssuePermissionContext.class);
+        when(outsideCustomer.getIssue()).thenReturn(issue);
+        when(serviceDeskOutsideCustomerPermissionContext.getOutsideCustomerContext())
+            .thenReturn(ImmutableList.of(outsideCustomer));
+
+        memo.dispatch(issue, () -> {
+            resolve();
+            resolve();
+        });
+
+        assertThat(resolutions.get(), is(1));
+    }
+
+    private List<CheckedUser> resolve() {
+        return memo.get(issue, "all", () -> {
+            resolutions.incrementAndGet();
+            return ImmutableList.of(member);
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import com.google.common.collect.AbstractIterator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyIterator;
+
+/**
+ * Iterates the distinct members of a request, strategy by strategy.
+ * <p>
+ * A strategy is only expanded once all users of the previous strategies have been consumed, and iteration stops as
+ * soon as the limit is reached. The laziness is per strategy: a limit met by the reporter and the participants skips
+ * the organisation and group strategies, but once such a strategy is reached all of its users are expanded at once.
+ */
+final class RequestMembersIterator extends AbstractIterator<CheckedUser> {
+
+    static final int NO_LIMIT = -1;
+
+    private final Function<RequestAccessUserStrategy, List<CheckedUser>> usersOfStrategy;
+    private final Iterator<RequestAccessUserStrategy> strategies;
+    private final int limit;
+    private final Set<CheckedUser> seen = new HashSet<>();
+
+    private Iterator<CheckedUser> currentStrategyUsers = emptyIterator();
+
+    /**
+     * @param usersOfStrategy expands the users of a strategy for the request, e.g. {@code s -> s.getUsers(issue)}
+     */
+    RequestMembersIterator(final Function<RequestAccessUserStrategy, List<CheckedUser>> usersOfStrategy,
+                           final Iterator<RequestAccessUserStrategy> strategies,
+                           final int limit) {
+        this.usersOfStrategy = usersOfStrategy;
+        this.strategies = strategies;
+        this.limit = limit;
+    }
+
+    @Override
+    protected CheckedUser computeNext() {
+        if (limit != NO_LIMIT && seen.size() >= limit) {
+            return endOfData();
+        }
+
+        while (true) {
+            while (currentStrategyUsers.hasNext()) {
+                final CheckedUser user = currentStrategyUsers.next();
+                if (seen.add(user)) {
+                    return user;
+                }
+            }
+
+            if (!strategies.hasNext()) {
+                return endOfData();
+            }
+            currentStrategyUsers = usersOfStrategy.apply(strategies.next()).iterator();
+        }
+    }
+}
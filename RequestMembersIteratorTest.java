@@ -0,0 +1,68 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.RequestAccessUserStrategy;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RequestMembersIteratorTest {
+
+    @Mock
+    private Issue issue;
+    @Mock
+    private RequestAccessUserStrategy reporterStrategy;
+    @Mock
+    private RequestAccessUserStrategy organisationStrategy;
+    @Mock
+    private CheckedUser reporter;
+    @Mock
+    private CheckedUser orgMember;
+
+    @Before
+    public void setUp() {
+        when(reporterStrategy.getUsers(issue)).thenReturn(ImmutableList.of(reporter));
+        when(organisationStrategy.getUsers(issue)).thenReturn(ImmutableList.of(reporter, orgMember));
+    }
+
+    @Test
+    public void returns_distinct_members_in_strategy_order() {
+        final RequestMembersIterator iterator = iterator(RequestMembersIterator.NO_LIMIT);
+
+        assertThat(newArrayList(iterator), contains(reporter, orgMember));
+    }
+
+    @Test
+    public void later_strategies_are_not_expanded_once_limit_is_reached() {
+        final RequestMembersIterator iterator = iterator(1);
+
+        assertThat(newArrayList(iterator), contains(reporter));
+        verify(organisationStrategy, never()).getUsers(issue);
+    }
+
+    @Test
+    public void zero_limit_returns_nothing() {
+        assertThat(iterator(0).hasNext(), is(false));
+        verify(reporterStrategy, never()).getUsers(issue);
+    }
+
+    private RequestMembersIterator iterator(final int limit) {
+        return new RequestMembersIterator(
+            strategy -> strategy.getUsers(issue),
+            ImmutableList.of(reporterStrategy, organisationStrategy).iterator(),
+            limit);
+    }
+}
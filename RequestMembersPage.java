@@ -0,0 +1,107 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.google.common.collect.ImmutableList;
+import io.atlassian.fugue.Option;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A page of permission checked request members, see {@link ExtendedCustomerInvolvedService#getMembers(
+ * com.atlassian.jira.issue.Issue, RequestMembersPage.Cursor, int)}
+ */
+public final class RequestMembersPage {
+
+    private final List<CheckedUser> members;
+    private final Option<Cursor> next;
+
+    RequestMembersPage(final List<CheckedUser> members, final Option<Cursor> next) {
+        this.members = ImmutableList.copyOf(members);
+        this.next = next;
+    }
+
+    public List<CheckedUser> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return the cursor of the next page, none if there are no more members
+     */
+    public Option<Cursor> getNext() {
+        return next;
+    }
+
+    /**
+     * Position in the members of a request, before permission checks: the index of a strategy in the order of
+     * {@link RequestAccessUserStrategyManager#iterateMembersByStrategy} and the last user key returned from its members,
+     * which are sorted by user key. Pages are computed from the current members of the request, so a member added in
+     * between shows up on a later page if its key sorts after the cursor, and a removed member never shifts the pages.
+     */
+    public static final class Cursor {
+
+        private static final Cursor START = new Cursor(0, Option.none());
+
+        private final int strategyIndex;
+        private final Option<String> afterUserKey;
+
+        private Cursor(final int strategyIndex, final Option<String> afterUserKey) {
+            this.strategyIndex = strategyIndex;
+            this.afterUserKey = afterUserKey;
+        }
+
+        public static Cursor start() {
+            return START;
+        }
+
+        /**
+         * Restore a cursor to the first member of a strategy, e.g. from request parameters
+         */
+        public static Cursor of(final int strategyIndex) {
+            checkArgument(strategyIndex >= 0, "strategyIndex must not be negative");
+            return strategyIndex == 0 ? START : new Cursor(strategyIndex, Option.none());
+        }
+
+        /**
+         * Restore a cursor to the members of a strategy after the given user key, e.g. from request parameters
+         */
+        public static Cursor after(final int strategyIndex, final String userKey) {
+            checkArgument(strategyIndex >= 0, "strategyIndex must not be negative");
+            return new Cursor(strategyIndex, Option.some(checkNotNull(userKey, "userKey")));
+        }
+
+        public int getStrategyIndex() {
+            return strategyIndex;
+        }
+
+        /**
+         * @return the key of the last user of the strategy returned before, none to start with its first member
+         */
+        public Option<String> getAfterUserKey() {
+            return afterUserKey;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Cursor)) {
+                return false;
+            }
+            final Cursor that = (Cursor) o;
+            return strategyIndex == that.strategyIndex && afterUserKey.equals(that.afterUserKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * strategyIndex + afterUserKey.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor{strategyIndex=" + strategyIndex + ", afterUserKey=" + afterUserKey.getOrNull() + '}';
+        }
+    }
+}
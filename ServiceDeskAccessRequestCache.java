@@ -0,0 +1,93 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.jira.cache.request.RequestCache;
+import com.atlassian.jira.cache.request.RequestCacheFactory;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.pocketknife.api.commons.error.AnError;
+import com.atlassian.servicedesk.api.ServiceDesk;
+import com.atlassian.servicedesk.internal.feature.servicedesk.InternalServiceDeskAccessManager;
+import com.atlassian.servicedesk.internal.feature.servicedesk.ServiceDeskInternalManager;
+import io.atlassian.fugue.Either;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the service desk of a project and its open and anonymous access settings for the current HTTP request.
+ * <p>
+ * A single portal page triggers many permission checks against the same project, each of them looking up the service
+ * desk and its access settings again. Values are cleared when the request ends, so access setting changes are visible
+ * to the next request. Outside of a request nothing is remembered.
+ */
+@Component
+public class ServiceDeskAccessRequestCache {
+
+    private final ServiceDeskInternalManager serviceDeskManager;
+    private final InternalServiceDeskAccessManager internalServiceDeskAccessManager;
+    private final ProjectManager projectManager;
+    private final RequestCache<Long, ServiceDeskAccess> serviceDeskAccessByProjectId;
+
+    @Autowired
+    public ServiceDeskAccessRequestCache(final ServiceDeskInternalManager serviceDeskManager,
+                                         final InternalServiceDeskAccessManager internalServiceDeskAccessManager,
+                                         final ProjectManager projectManager,
+                                         final RequestCacheFactory requestCacheFactory) {
+        this.serviceDeskManager = serviceDeskManager;
+        this.internalServiceDeskAccessManager = internalServiceDeskAccessManager;
+        this.projectManager = projectManager;
+        this.serviceDeskAccessByProjectId = requestCacheFactory.createRequestCache(
+            ServiceDeskAccessRequestCache.class.getName() + ".serviceDeskAccess", this::loadServiceDeskAccess);
+    }
+
+    public Either<AnError, ServiceDesk> getServiceDesk(final Project project) {
+        return get(project).serviceDesk;
+    }
+
+    public boolean isOpenAccess(final Project project) {
+        return get(project).isOpenAccess();
+    }
+
+    public boolean isAnonymousAccessAllowed(final Project project) {
+        return get(project).isAnonymousAccessAllowed();
+    }
+
+    private ServiceDeskAccess get(final Project project) {
+        if (project.getId() == null) {
+            return new ServiceDeskAccess(serviceDeskManager.getServiceDesk(project, false));
+        }
+        return serviceDeskAccessByProjectId.get(project.getId());
+    }
+
+    private ServiceDeskAccess loadServiceDeskAccess(final Long projectId) {
+        final Project project = projectManager.getProjectObj(projectId);
+        return new ServiceDeskAccess(serviceDeskManager.getServiceDesk(project, false));
+    }
+
+    /**
+     * The access settings are only looked up when first asked for, a request cache is confined to its thread
+     */
+    private final class ServiceDeskAccess {
+        private final Either<AnError, ServiceDesk> serviceDesk;
+        private Boolean openAccess;
+        private Boolean anonymousAccessAllowed;
+
+        ServiceDeskAccess(final Either<AnError, ServiceDesk> serviceDesk) {
+            this.serviceDesk = serviceDesk;
+        }
+
+        boolean isOpenAccess() {
+            if (openAccess == null) {
+                openAccess = serviceDesk.exists(internalServiceDeskAccessManager::isOpenAccess);
+            }
+            return openAccess;
+        }
+
+        boolean isAnonymousAccessAllowed() {
+            if (anonymousAccessAllowed == null) {
+                anonymousAccessAllowed = serviceDesk.map(internalServiceDeskAccessManager::isAnonymousAccessAllowed)
+                    .getOrElse(false);
+            }
+            return anonymousAccessAllowed;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.atlassian.servicedesk.internal.permission.security.type;
+
+import com.atlassian.cache.CacheLoader;
+import com.atlassian.jira.cache.request.RequestCache;
+import com.atlassian.jira.cache.request.RequestCacheFactory;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.servicedesk.api.ServiceDesk;
+import com.atlassian.servicedesk.internal.feature.servicedesk.InternalServiceDeskAccessManager;
+import com.atlassian.servicedesk.internal.feature.servicedesk.ServiceDeskInternalManager;
+import io.atlassian.fugue.Either;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ServiceDeskAccessRequestCacheTest {
+
+    private static final long PROJECT_ID = 10L;
+
+    @Mock
+    private ServiceDeskInternalManager serviceDeskInternalManager;
+    @Mock
+    private InternalServiceDeskAccessManager internalServiceDeskAccessManager;
+    @Mock
+    private ProjectManager projectManager;
+    @Mock
+    private RequestCacheFactory requestCacheFactory;
+    @Mock
+    private RequestCache<Long, Object> requestCache;
+    @Mock
+    private Project project;
+    @Mock
+    private Project unsavedProject;
+    @Mock
+    private ServiceDesk serviceDesk;
+
+    /**
+     * The values of the current request
+     */
+    private final Map<Long, Object> requestValues = new HashMap<>();
+
+    private ServiceDeskAccessRequestCache serviceDeskAccessRequestCache;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(requestCacheFactory.createRequestCache(anyString(), any(CacheLoader.class))).thenAnswer(invocation -> {
+            final CacheLoader<Long, Object> loader = invocation.getArgument(1);
+            when(requestCache.get(anyLong())).thenAnswer(get ->
+                requestValues.computeIfAbsent(get.getArgument(0), loader::load));
+            return requestCache;
+        });
+        when(project.getId()).thenReturn(PROJECT_ID);
+        when(projectManager.getProjectObj(PROJECT_ID)).thenReturn(project);
+        when(serviceDeskInternalManager.getServiceDesk(any(Project.class), any(Boolean.class)))
+            .thenReturn(Either.right(serviceDesk));
+        when(internalServiceDeskAccessManager.isOpenAccess(serviceDesk)).thenReturn(true);
+
+        serviceDeskAccessRequestCache = new ServiceDeskAccessRequestCache(serviceDeskInternalManager,
+            internalServiceDeskAccessManager, projectManager, requestCacheFactory);
+    }
+
+    @Test
+    public void access_settings_are_looked_up_once_per_request() {
+        assertThat(serviceDeskAccessRequestCache.isOpenAccess(project), is(true));
+        assertThat(serviceDeskAccessRequestCache.isOpenAccess(project), is(true));
+        assertThat(serviceDeskAccessRequestCache.getServiceDesk(project).isRight(), is(true));
+
+        verify(serviceDeskInternalManager, times(1)).getServiceDesk(project, false);
+        verify(internalServiceDeskAccessManager, times(1)).isOpenAccess(serviceDesk);
+
+        // the next request looks them up again
+        requestValues.clear();
+        serviceDeskAccessRequestCache.isOpenAccess(project);
+
+        verify(internalServiceDeskAccessManager, times(2)).isOpenAccess(serviceDesk);
+    }
+
+    @Test
+    public void only_the_setting_asked_for_is_looked_up() {
+        serviceDeskAccessRequestCache.isOpenAccess(project);
+
+        verify(internalServiceDeskAccessManager, never()).isAnonymousAccessAllowed(serviceDesk);
+    }
+
+    @Test
+    public void unsaved_projects_are_not_remembered() {
+        serviceDeskAccessRequestCache.isOpenAccess(unsavedProject);
+        serviceDeskAccessRequestCache.isOpenAccess(unsavedProject);
+
+        verify(serviceDeskInternalManager, times(2)).getServiceDesk(unsavedProject, false);
+    }
+}
@@ -20,12 +20,18 @@ public class ServiceDeskSecurityTypeInstaller {
 
     private final I18nHelper i18nHelper;
     private final CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker;
+    private final CustomerPortalUserSearchIndex customerPortalUserSearchIndex;
+    private final CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable;
 
     @Autowired
     public ServiceDeskSecurityTypeInstaller(I18nHelper i18nHelper,
-                                            CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker) {
+                                            CustomerPortalOnlyPermissionChecker customerPortalOnlyPermissionChecker,
+                                            CustomerPortalUserSearchIndex customerPortalUserSearchIndex,
+                                            CustomerPortalPermissionDecisionTable customerPortalPermissionDecisionTable) {
         this.i18nHelper = i18nHelper;
         this.customerPortalOnlyPermissionChecker = customerPortalOnlyPermissionChecker;
+        this.customerPortalUserSearchIndex = customerPortalUserSearchIndex;
+        this.customerPortalPermissionDecisionTable = customerPortalPermissionDecisionTable;
     }
 
     public void install() {
@@ -34,8 +40,12 @@ public class ServiceDeskSecurityTypeInstaller {
         // Load the security type manager
         SecurityTypeManager securityTypeManager = getSecurityTypeManager();
 
+        // Compile the permissions the security type can grant before Jira starts asking for them
+        customerPortalPermissionDecisionTable.compile();
+
         // Create the security types we want to install
-        CustomerPortalOnlySecurityType securityType = new CustomerPortalOnlySecurityTypeImpl(i18nHelper, customerPortalOnlyPermissionChecker);
+        CustomerPortalOnlySecurityType securityType = new CustomerPortalOnlySecurityTypeImpl(i18nHelper, customerPortalOnlyPermissionChecker,
+            customerPortalUserSearchIndex, customerPortalPermissionDecisionTable);
 
         // We need to inject our security type into these both of these services. They are identical and Jira uses both in different places. They both
         // load from the same .xml file and are lazy loaded, which means if we insert into one and not the other, we won't get consistent behaviour
@@ -0,0 +1,52 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the permission checked member expansion, see
+ * {@link RequestAccessUserStrategyManagerBenchmark#main} to run it with the allocation profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerInvolvedServiceBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int participants;
+
+    @Param({"10", "10000", "100000"})
+    public int organisationMembers;
+
+    @Param({"1", "5"})
+    public int groupNestingDepth;
+
+    private RequestAccessBenchmarkFixture fixture;
+    private CustomerInvolvedServiceImpl customerInvolvedService;
+
+    @Setup
+    public void setUp() {
+        fixture = new RequestAccessBenchmarkFixture(participants, organisationMembers, groupNestingDepth);
+        customerInvolvedService = fixture.createCustomerInvolvedService(fixture.createManager());
+    }
+
+    @Benchmark
+    public List<CheckedUser> getMembers() {
+        return customerInvolvedService.getMembers(fixture.getIssue());
+    }
+}
@@ -0,0 +1,409 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.cache.memory.MemoryCacheManager;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.mock.issue.MockIssue;
+import com.atlassian.jira.project.MockProject;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.user.MockApplicationUser;
+import com.atlassian.servicedesk.api.customer.CustomerContextService;
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.api.user.permission.ServiceDeskLicenseAndPermissionService;
+import com.atlassian.servicedesk.internal.feature.organization.member.CustomerOrganizationMemberManager;
+import com.atlassian.servicedesk.internal.user.permission.roles.ServiceDeskJiraRoleManager;
+import com.atlassian.servicedesk.internal.utils.context.ServiceDeskOutsideCustomerPermissionContext;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+/**
+ * Synthetic request access fixture for the JMH benchmarks: one request with a reporter, the given number of request
+ * participants, one organisation of the given size and a chain of nested groups shared with the request.
+ * <p>
+ * The strategies are in-memory subclasses of the real ones, so the benchmarks measure the manager and service overhead
+ * (ordering, caching, de-duplication, permission filtering) rather than the database. Everything on the measured path
+ * is a plain stub: Jira's mock users and issues, and dynamic proxies for the services we only need a method or two of.
+ */
+final class RequestAccessBenchmarkFixture {
+
+    private static final int USERS_PER_GROUP = 50;
+
+    private final Issue issue;
+    private final CheckedUser reporter;
+    private final CheckedUser lastOrganisationMember;
+    private final CheckedUser lastNestedGroupMember;
+    private final CheckedUser uninvolvedUser;
+
+    private final Members participants;
+    private final Members organisation;
+    private final NestedGroup groups;
+
+    private RequestAccessDecisionCache decisionCache;
+
+    RequestAccessBenchmarkFixture(final int participants, final int organisationMembers, final int groupNestingDepth) {
+        final MockIssue issue = new MockIssue(10000L);
+        reporter = user("reporter");
+        uninvolvedUser = user("uninvolved");
+        issue.setUpdated(new Timestamp(1000L));
+        issue.setProjectObject(new MockProject(10L, "BENCH"));
+        issue.setReporter(reporter.forJIRA());
+        this.issue = issue;
+
+        this.participants = new Members(users("participant", participants));
+        final List<CheckedUser> organisationUsers = users("org-member", organisationMembers);
+        lastOrganisationMember = organisationUsers.get(organisationUsers.size() - 1);
+        this.organisation = new Members(organisationUsers);
+
+        NestedGroup group = null;
+        for (int depth = groupNestingDepth - 1; depth >= 0; depth--) {
+            group = new NestedGroup(users("group" + depth + "-member", USERS_PER_GROUP), group);
+        }
+        this.groups = group;
+        lastNestedGroupMember = group.deepest().members.users.get(USERS_PER_GROUP - 1);
+    }
+
+    RequestAccessUserStrategyManagerImpl createManager() {
+        decisionCache = new RequestAccessDecisionCache(new MemoryCacheManager(), new NoOpEventPublisher(), new RequestAccessMetrics());
+        return createManager(decisionCache);
+    }
+
+    /**
+     * A manager that evaluates the strategies on every match, for the worst case without a cached decision
+     */
+    RequestAccessUserStrategyManagerImpl createUncachedManager() {
+        return createManager(new NoDecisionCache());
+    }
+
+    private RequestAccessUserStrategyManagerImpl createManager(final RequestAccessDecisionCache decisionCache) {
+        final CustomerContextService customerContextService = createCustomerContextService();
+        return new RequestAccessUserStrategyManagerImpl(
+            decisionCache,
+            new RequestAccessExpansionExecutor(stub(JiraAuthenticationContext.class), customerContextService),
+            new RequestAccessMetrics(),
+            new StubReporterStrategy(reporter),
+            new StubParticipantStrategy(participants),
+            new StubOrganisationStrategy(organisation),
+            new StubGroupStrategy(groups),
+            new StubOutsiderStrategy());
+    }
+
+    CustomerInvolvedServiceImpl createCustomerInvolvedService(final RequestAccessUserStrategyManager manager) {
+        final ServiceDeskLicenseAndPermissionService permissionService = stub(ServiceDeskLicenseAndPermissionService.class,
+            Collections.singletonMap("canViewPortalPermissionFixTransition", args -> true));
+        final CustomerContextService customerContextService = createCustomerContextService();
+        // the organisation members are customers of the project, everyone else is asked about one by one
+        final Set<ApplicationUser> organisationMembers = new HashSet<>();
+        organisation.users.forEach(user -> organisationMembers.add(user.forJIRA()));
+        final CustomerPortalAccessBatchChecker customerPortalAccessBatchChecker = new CustomerPortalAccessBatchChecker(
+            permissionService, customerContextService,
+            stub(ServiceDeskJiraRoleManager.class,
+                Collections.singletonMap("getAllUsersInRole", args -> Collections.emptySet())),
+            stub(CustomerOrganizationMemberManager.class,
+                Collections.singletonMap("getOrganizationMembersForProject", args -> organisationMembers)));
+        return new CustomerInvolvedServiceImpl(
+            customerContextService, manager, customerPortalAccessBatchChecker, new RequestMembersEventMemo(
+            stub(JiraAuthenticationContext.class), customerContextService,
+            stub(ServiceDeskOutsideCustomerPermissionContext.class)));
+    }
+
+    Issue getIssue() {
+        return issue;
+    }
+
+    ApplicationUser getReporter() {
+        return reporter.forJIRA();
+    }
+
+    ApplicationUser getLastOrganisationMember() {
+        return lastOrganisationMember.forJIRA();
+    }
+
+    ApplicationUser getLastNestedGroupMember() {
+        return lastNestedGroupMember.forJIRA();
+    }
+
+    ApplicationUser getUninvolvedUser() {
+        return uninvolvedUser.forJIRA();
+    }
+
+    RequestAccessDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CustomerContextService createCustomerContextService() {
+        return stub(CustomerContextService.class,
+            Collections.singletonMap("runInCustomerContext", args -> ((Supplier<Object>) args[0]).get()));
+    }
+
+    private static List<CheckedUser> users(final String prefix, final int count) {
+        final List<CheckedUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(user(prefix + i));
+        }
+        return users;
+    }
+
+    private static CheckedUser user(final String key) {
+        final ApplicationUser applicationUser = new MockApplicationUser(key, key, key + "@example.com");
+        return stub(CheckedUser.class, Collections.singletonMap("forJIRA", args -> applicationUser));
+    }
+
+    private static <T> T stub(final Class<T> type) {
+        return stub(type, Collections.emptyMap());
+    }
+
+    /**
+     * A dynamic proxy answering the given methods by name, with identity equality and null, false or zero for any
+     * other method
+     */
+    private static <T> T stub(final Class<T> type, final Map<String, Answer> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    final Answer answer = answers.get(method.getName());
+                    if (answer != null) {
+                        return answer.answer(args);
+                    }
+                    final Class<?> returnType = method.getReturnType();
+                    if (returnType.isPrimitive() && returnType != void.class) {
+                        // the default element of a primitive array is the zero of that type, boxed as the proxy expects
+                        return Array.get(Array.newInstance(returnType, 1), 0);
+                    }
+                    return null;
+            }
+        }));
+    }
+
+    private interface Answer {
+        Object answer(Object[] args);
+    }
+
+    /**
+     * A fixed member list, matching by user key
+     */
+    static final class Members {
+        private final List<CheckedUser> users;
+        private final Set<String> userKeys = new HashSet<>();
+
+        Members(final List<CheckedUser> users) {
+            this.users = users;
+            users.forEach(user -> userKeys.add(user.forJIRA().getKey()));
+        }
+
+        boolean contains(final ApplicationUser user) {
+            return user != null && userKeys.contains(user.getKey());
+        }
+    }
+
+    /**
+     * A group with its direct members and at most one nested group. Like a directory, members of nested groups are
+     * only found by walking the nesting on every lookup.
+     */
+    static final class NestedGroup {
+        private final Members members;
+        private final NestedGroup nestedGroup;
+
+        NestedGroup(final List<CheckedUser> members, final NestedGroup nestedGroup) {
+            this.members = new Members(members);
+            this.nestedGroup = nestedGroup;
+        }
+
+        void collectMembers(final Set<CheckedUser> result) {
+            result.addAll(members.users);
+            if (nestedGroup != null) {
+                nestedGroup.collectMembers(result);
+            }
+        }
+
+        boolean isMember(final ApplicationUser user) {
+            return members.contains(user) || (nestedGroup != null && nestedGroup.isMember(user));
+        }
+
+        NestedGroup deepest() {
+            return nestedGroup == null ? this : nestedGroup.deepest();
+        }
+    }
+
+    private static final class StubReporterStrategy extends ReporterRequestAccessUserStrategy {
+        private final CheckedUser reporter;
+
+        StubReporterStrategy(final CheckedUser reporter) {
+            super(null);
+            this.reporter = reporter;
+        }
+
+        @Override
+        public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
+            return Collections.singletonList(reporter);
+        }
+    }
+
+    private static final class StubParticipantStrategy extends RequestParticipantRequestAccessUserStrategy {
+        private final Members participants;
+
+        StubParticipantStrategy(final Members participants) {
+            super(null, null);
+            this.participants = participants;
+        }
+
+        @Override
+        public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
+            return new ArrayList<>(participants.users);
+        }
+
+        @Override
+        public boolean match(final ApplicationUser user, final Issue issue) {
+            return participants.contains(user);
+        }
+    }
+
+    private static final class StubOrganisationStrategy extends CustomerOrganisationParticipantRequestAccessUserStrategy {
+        private final Members organisation;
+
+        StubOrganisationStrategy(final Members organisation) {
+            super(null, null, null);
+            this.organisation = organisation;
+        }
+
+        @Override
+        public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
+            return new ArrayList<>(organisation.users);
+        }
+
+        @Nonnull
+        @Override
+        public Map<Long, List<CheckedUser>> getUsers(@Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.getUsersEach(this, issues);
+        }
+
+        @Override
+        public boolean match(final ApplicationUser user, final Issue issue) {
+            return organisation.contains(user);
+        }
+
+        @Nonnull
+        @Override
+        public Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.matchEach(this, user, issues);
+        }
+    }
+
+    private static final class StubGroupStrategy extends CustomerGroupParticipantRequestAccessUserStrategy {
+        private final NestedGroup groups;
+
+        StubGroupStrategy(final NestedGroup groups) {
+            super(null, null, null, null, new MemoryCacheManager(), null);
+            this.groups = groups;
+        }
+
+        @Override
+        public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
+            final Set<CheckedUser> members = new LinkedHashSet<>();
+            groups.collectMembers(members);
+            return new ArrayList<>(members);
+        }
+
+        @Nonnull
+        @Override
+        public Map<Long, List<CheckedUser>> getUsers(@Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.getUsersEach(this, issues);
+        }
+
+        @Override
+        public boolean match(final ApplicationUser user, final Issue issue) {
+            return groups.isMember(user);
+        }
+
+        @Nonnull
+        @Override
+        public Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.matchEach(this, user, issues);
+        }
+    }
+
+    private static final class StubOutsiderStrategy extends CustomerOutsiderRequestAccessUserStrategy {
+        StubOutsiderStrategy() {
+            super(null, null);
+        }
+
+        @Override
+        public List<CheckedUser> getUsers(@Nonnull final Issue issue) {
+            return Collections.emptyList();
+        }
+
+        @Nonnull
+        @Override
+        public Map<Long, List<CheckedUser>> getUsers(@Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.getUsersEach(this, issues);
+        }
+
+        @Override
+        public boolean match(final ApplicationUser user, final Issue issue) {
+            return false;
+        }
+
+        @Nonnull
+        @Override
+        public Set<Long> match(final ApplicationUser user, @Nonnull final Collection<Issue> issues) {
+            return BulkRequestAccessUserStrategy.matchEach(this, user, issues);
+        }
+    }
+
+    private static final class NoDecisionCache extends RequestAccessDecisionCache {
+        NoDecisionCache() {
+            super(new MemoryCacheManager(), new NoOpEventPublisher(), new RequestAccessMetrics());
+        }
+
+        @Override
+        public boolean get(final ApplicationUser user, final Issue issue, final BooleanSupplier decision) {
+            return decision.getAsBoolean();
+        }
+
+        @Override
+        public boolean isKnownMatch(final ApplicationUser user, final Issue issue) {
+            return false;
+        }
+
+        @Override
+        public void putMatch(final ApplicationUser user, final Issue issue) {
+        }
+    }
+
+    private static final class NoOpEventPublisher implements EventPublisher {
+        @Override
+        public void publish(final Object event) {
+        }
+
+        @Override
+        public void register(final Object listener) {
+        }
+
+        @Override
+        public void unregister(final Object listener) {
+        }
+
+        @Override
+        public void unregisterAll() {
+        }
+    }
+}
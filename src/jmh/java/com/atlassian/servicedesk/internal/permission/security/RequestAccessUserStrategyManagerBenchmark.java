@@ -0,0 +1,116 @@
+package com.atlassian.servicedesk.internal.permission.security;
+
+import com.atlassian.servicedesk.api.user.CheckedUser;
+import com.atlassian.servicedesk.internal.spi.permission.security.CustomerInvolvedType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the request access hot path. Run {@link #main} to also report the allocation rate.
+ *
+ * @see RequestAccessBenchmarkFixture
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestAccessUserStrategyManagerBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int participants;
+
+    @Param({"10", "10000", "100000"})
+    public int organisationMembers;
+
+    @Param({"1", "5"})
+    public int groupNestingDepth;
+
+    private RequestAccessBenchmarkFixture fixture;
+    private RequestAccessUserStrategyManagerImpl manager;
+    private RequestAccessUserStrategyManagerImpl uncachedManager;
+
+    @Setup
+    public void setUp() {
+        fixture = new RequestAccessBenchmarkFixture(participants, organisationMembers, groupNestingDepth);
+        manager = fixture.createManager();
+        uncachedManager = fixture.createUncachedManager();
+    }
+
+    /**
+     * Every iteration starts without cached decisions, so iterations measure the same thing whatever ran before
+     */
+    @Setup(Level.Iteration)
+    public void invalidateDecisions() {
+        fixture.getDecisionCache().invalidateAll();
+    }
+
+    @Benchmark
+    public boolean matchReporter() {
+        return manager.match(fixture.getReporter(), fixture.getIssue());
+    }
+
+    @Benchmark
+    public boolean matchOrganisationMember() {
+        return manager.match(fixture.getLastOrganisationMember(), fixture.getIssue());
+    }
+
+    /**
+     * The worst case for the group strategy: the user is only a member of the most deeply nested group
+     */
+    @Benchmark
+    public boolean matchNestedGroupMemberUncached() {
+        return uncachedManager.match(fixture.getLastNestedGroupMember(), fixture.getIssue());
+    }
+
+    /**
+     * The worst case: every strategy is evaluated and nothing is answered from the decision cache
+     */
+    @Benchmark
+    public boolean matchUninvolvedUserUncached() {
+        return uncachedManager.match(fixture.getUninvolvedUser(), fixture.getIssue());
+    }
+
+    @Benchmark
+    public boolean matchForTypes() {
+        return manager.match(fixture.getLastOrganisationMember(), fixture.getIssue(),
+            CustomerInvolvedType.REQUEST_PARTICIPANT, CustomerInvolvedType.CUSTOMER_ORGANISATION);
+    }
+
+    @Benchmark
+    public List<CheckedUser> getMembers() {
+        return manager.getMembers(fixture.getIssue());
+    }
+
+    @Benchmark
+    public List<CheckedUser> getMembersForTypes() {
+        return manager.getMembersForTypes(fixture.getIssue(),
+            CustomerInvolvedType.REPORTER, CustomerInvolvedType.REQUEST_PARTICIPANT);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RequestAccessUserStrategyManagerBenchmark.class.getSimpleName())
+            .include(CustomerInvolvedServiceBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}